@@ -0,0 +1,34 @@
+package me.nabdev.oxidation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures serializing the state tree to the JSON published on the Tree topic.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+    @Param({ "wide", "deep", "transitions" })
+    public String shape;
+
+    private SyntheticMachine machine;
+
+    @Setup
+    public void setup() {
+        machine = SyntheticMachine.create(shape);
+    }
+
+    @Benchmark
+    public String getObjectForState() {
+        return machine.getObjectForState(machine.rootState).toString();
+    }
+}
@@ -0,0 +1,36 @@
+package me.nabdev.oxidation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures a full {@link StateMachineBase#periodic()} cycle on generated trees.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StateMachineBenchmark {
+    @Param({ "wide", "deep", "transitions", "flapping" })
+    public String shape;
+
+    private SyntheticMachine machine;
+
+    @Setup
+    public void setup() {
+        machine = SyntheticMachine.create(shape);
+        machine.tick();
+    }
+
+    @Benchmark
+    public State periodic() {
+        machine.tick();
+        return machine.currentState;
+    }
+}
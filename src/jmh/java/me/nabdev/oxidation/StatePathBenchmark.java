@@ -0,0 +1,118 @@
+package me.nabdev.oxidation;
+
+import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the ways of finding the states to exit and enter on a state change,
+ * switching between the leaves of two chains of states that only share the
+ * root. {@link #stack(Blackhole)} is the original algorithm, which built a
+ * {@link Stack} of ancestors for both states, and {@link #depthWalk(Blackhole)}
+ * is the one {@link StateMachineBase} uses now, which walks up from the deeper
+ * state into a preallocated array.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StatePathBenchmark {
+    @Param({ "2", "8", "16" })
+    public int depth;
+
+    private State from;
+    private State to;
+    private State[] enterPath;
+
+    private static final class ChainMachine extends StateMachineBase {
+        State chain(String prefix, int depth) {
+            State level = new State(this) {
+            }.withName(prefix + "0");
+            registerToRootState(level);
+            for (int i = 1; i < depth; i++) {
+                State child = new State(this) {
+                }.withName(prefix + i);
+                level.withDefaultChild(child);
+                level = child;
+            }
+            return level;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        ChainMachine machine = new ChainMachine();
+        from = machine.chain("A", depth);
+        to = machine.chain("B", depth);
+        // Assigns every state its depth
+        machine.compileTransitions();
+        enterPath = new State[depth];
+    }
+
+    @Benchmark
+    public void stack(Blackhole blackhole) {
+        Stack<State> before = getStateTree(from);
+        Stack<State> after = getStateTree(to);
+
+        while (!before.isEmpty() && !after.isEmpty() && before.peek() == after.peek()) {
+            before.pop();
+            after.pop();
+        }
+
+        Stack<State> exitStack = new Stack<>();
+        while (!before.isEmpty()) {
+            exitStack.push(before.pop());
+        }
+        while (!exitStack.isEmpty()) {
+            blackhole.consume(exitStack.pop());
+        }
+
+        while (!after.isEmpty()) {
+            blackhole.consume(after.pop());
+        }
+    }
+
+    @Benchmark
+    public void depthWalk(Blackhole blackhole) {
+        State exiting = from;
+        State entering = to;
+        int enterCount = 0;
+
+        while (exiting.depth > entering.depth) {
+            blackhole.consume(exiting);
+            exiting = exiting.parentState;
+        }
+        while (entering.depth > exiting.depth) {
+            enterPath[enterCount++] = entering;
+            entering = entering.parentState;
+        }
+        while (exiting != entering) {
+            blackhole.consume(exiting);
+            exiting = exiting.parentState;
+            enterPath[enterCount++] = entering;
+            entering = entering.parentState;
+        }
+
+        for (int i = enterCount - 1; i >= 0; i--) {
+            blackhole.consume(enterPath[i]);
+            enterPath[i] = null;
+        }
+    }
+
+    private static Stack<State> getStateTree(State state) {
+        Stack<State> stateTree = new Stack<>();
+        State cur = state;
+        while (cur.parentState != null) {
+            stateTree.push(cur);
+            cur = cur.parentState;
+        }
+        return stateTree;
+    }
+}
@@ -0,0 +1,121 @@
+package me.nabdev.oxidation;
+
+import java.util.function.BooleanSupplier;
+
+import me.nabdev.oxidation.sim.SimScheduler;
+
+/**
+ * A state machine with a generated tree, used by the benchmarks. Telemetry is
+ * disabled so that it can run without NetworkTables, and the clock, robot mode
+ * and scheduler are replaced so that it can run without HAL.
+ */
+final class SyntheticMachine extends StateMachineBase {
+    private final boolean[] values = new boolean[4096];
+    private int nextValue = 0;
+    private boolean flip = false;
+    private final boolean flapping;
+
+    private SyntheticMachine(String shape) {
+        setTelemetryFormat(TelemetryFormat.NONE);
+        setClock(() -> System.nanoTime() / 1000);
+        setModeSource(() -> RobotMode.DISABLED);
+        setScheduler(new SimScheduler());
+        // The deep shape is deliberately deeper than the validator recommends
+        setValidateOnStartup(false);
+        flapping = shape.equals("flapping");
+        switch (shape) {
+            case "wide" -> buildWide(64);
+            case "deep" -> buildDeep(16);
+            case "transitions" -> buildManyTransitions(4, 16);
+            case "flapping" -> buildFlapping(8);
+            default -> throw new IllegalArgumentException("Unknown tree shape: " + shape);
+        }
+        onStartup();
+    }
+
+    static SyntheticMachine create(String shape) {
+        return new SyntheticMachine(shape);
+    }
+
+    /** Run one cycle, flipping the flapping condition first if enabled. */
+    void tick() {
+        if (flapping)
+            flip = !flip;
+        periodic();
+    }
+
+    // A separate, always false condition so that every transition has to be
+    // sampled
+    private BooleanSupplier condition() {
+        int index = nextValue++;
+        return () -> values[index];
+    }
+
+    private State state(String name) {
+        return new State(this) {
+        }.withName(name);
+    }
+
+    private void buildWide(int width) {
+        State[] leaves = new State[width];
+        for (int i = 0; i < width; i++) {
+            leaves[i] = state("Leaf" + i);
+        }
+        registerToRootState(leaves);
+        for (int i = 0; i < width; i++) {
+            leaves[i].withTransition(leaves[(i + 1) % width], condition(), "Next");
+            leaves[i].withTransition(leaves[(i + width - 1) % width], condition(), "Previous");
+        }
+        currentState = leaves[0];
+    }
+
+    private void buildDeep(int depth) {
+        State exit = state("Exit");
+        State level = state("Level0");
+        registerToRootState(level, exit);
+        level.withTransition(exit, condition(), "Exit0");
+        for (int i = 1; i < depth; i++) {
+            State child = state("Level" + i);
+            level.withDefaultChild(child);
+            child.withTransition(exit, condition(), "Exit" + i);
+            level = child;
+        }
+        currentState = level;
+    }
+
+    private void buildManyTransitions(int depth, int transitionsPerLevel) {
+        State exit = state("Exit");
+        State level = state("Level0");
+        registerToRootState(level, exit);
+        for (int i = 1; i < depth; i++) {
+            State child = state("Level" + i);
+            level.withDefaultChild(child);
+            level = child;
+        }
+        for (State s = level; s != rootState; s = s.parentState) {
+            for (int i = 0; i < transitionsPerLevel; i++) {
+                s.withTransition(exit, condition(), i, "Exit" + i);
+            }
+        }
+        currentState = level;
+    }
+
+    private void buildFlapping(int depth) {
+        State a = chain("A", depth);
+        State b = chain("B", depth);
+        a.withTransition(b, () -> flip, "Flip");
+        b.withTransition(a, () -> !flip, "Flop");
+        currentState = a;
+    }
+
+    private State chain(String prefix, int depth) {
+        State level = state(prefix + "0");
+        registerToRootState(level);
+        for (int i = 1; i < depth; i++) {
+            State child = state(prefix + i);
+            level.withDefaultChild(child);
+            level = child;
+        }
+        return level;
+    }
+}
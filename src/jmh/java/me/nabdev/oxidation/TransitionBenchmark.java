@@ -0,0 +1,45 @@
+package me.nabdev.oxidation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+
+import me.nabdev.oxidation.State.TransitionInfo;
+
+/**
+ * Measures {@link State#evaluateBestTransition(TransitionInfo[])} when only the
+ * lowest priority transition is active.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TransitionBenchmark {
+    @Param({ "4", "16", "64" })
+    public int count;
+
+    private TransitionInfo[] transitions;
+    private boolean[] values;
+
+    @Setup
+    public void setup() {
+        values = new boolean[count];
+        values[count - 1] = true;
+        transitions = new TransitionInfo[0];
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            transitions = State.insertByPriority(transitions,
+                    new TransitionInfo(null, null, () -> values[index], i, "Transition" + i));
+        }
+    }
+
+    @Benchmark
+    public TransitionInfo evaluateBestTransition() {
+        return State.evaluateBestTransition(transitions);
+    }
+}
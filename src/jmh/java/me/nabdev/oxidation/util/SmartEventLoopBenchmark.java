@@ -0,0 +1,60 @@
+package me.nabdev.oxidation.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.wpilibj2.command.Command;
+
+/**
+ * Measures {@link SmartEventLoop#poll()} with many bindings. Conditions never
+ * change, so no commands are scheduled and the command scheduler is never
+ * needed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SmartEventLoopBenchmark {
+    @Param({ "100", "500" })
+    public int bindings;
+
+    /** How many bindings share each condition (like several bindings on one button) */
+    @Param({ "1", "10" })
+    public int bindingsPerCondition;
+
+    private SmartEventLoop loop;
+    private boolean[] values;
+
+    @Setup
+    public void setup() {
+        loop = new SmartEventLoop();
+        values = new boolean[bindings];
+        SmartTrigger[] triggers = new SmartTrigger[(bindings + bindingsPerCondition - 1) / bindingsPerCondition];
+        for (int i = 0; i < triggers.length; i++) {
+            int index = i;
+            triggers[i] = new SmartTrigger(loop, () -> values[index]);
+        }
+        for (int i = 0; i < bindings; i++) {
+            SmartTrigger trigger = triggers[i / bindingsPerCondition];
+            Command command = new Command() {
+            };
+            switch (i % 3) {
+                case 0 -> trigger.onTrue(command);
+                case 1 -> trigger.onFalse(command);
+                default -> trigger.whileTrue(command);
+            }
+        }
+    }
+
+    @Benchmark
+    public void poll() {
+        loop.poll();
+    }
+}
@@ -0,0 +1,119 @@
+package me.nabdev.oxidation;
+
+import java.util.Arrays;
+
+import org.littletonrobotics.junction.Logger;
+
+import me.nabdev.oxidation.State.TransitionInfo;
+
+/**
+ * Records state machine activity to AdvantageKit's {@link Logger} using
+ * primitive arrays, so logs stay compact and nothing is formatted per cycle.
+ * <p>
+ * Under {@code StateMachine/}:
+ * <ul>
+ * <li>{@code StateNames}, {@code StateParents}, {@code TransitionNames},
+ * {@code TransitionSources}, {@code TransitionTargets}: the dictionary for the
+ * IDs below, logged whenever the tree changes</li>
+ * <li>{@code CurrentStateId} and {@code CurrentState}: logged when the state
+ * changes</li>
+ * <li>{@code Transitions}: the IDs of the transitions taken, logged on cycles
+ * where transitions are taken (and cleared on the next cycle)</li>
+ * <li>{@code DwellTimes}: how long each state (by ID) stayed active the last
+ * time it was exited, in seconds, logged when the state changes</li>
+ * <li>{@code TriggerFires}: how many times each state's triggers (by ID) have
+ * changed value, logged when any of them fire</li>
+ * </ul>
+ * Values are only recorded on cycles where they change, and log viewers show
+ * the last recorded value until the next one. Every array is recorded as a new
+ * copy, since AdvantageKit holds on to the array it is given and reads it from
+ * another thread.
+ */
+final class AdvantageKitLogger {
+    private static final String PREFIX = "StateMachine/";
+    private static final long[] NO_TRANSITIONS = new long[0];
+
+    private State[] states = new State[0];
+    private long[] triggerFires = new long[0];
+    private State loggedState;
+    private boolean loggedTransitions = false;
+
+    /**
+     * Log the dictionary for a newly compiled tree.
+     *
+     * @param states      Every state, indexed by ID
+     * @param transitions Every transition, indexed by ID
+     */
+    void logTree(State[] states, TransitionInfo[] transitions) {
+        this.states = states;
+        triggerFires = new long[states.length];
+        loggedState = null;
+
+        String[] stateNames = new String[states.length];
+        long[] stateParents = new long[states.length];
+        for (int i = 0; i < states.length; i++) {
+            stateNames[i] = states[i].getDeepName();
+            stateParents[i] = states[i].parentState == null ? -1 : states[i].parentState.id;
+        }
+        String[] transitionNames = new String[transitions.length];
+        long[] transitionSources = new long[transitions.length];
+        long[] transitionTargets = new long[transitions.length];
+        for (int i = 0; i < transitions.length; i++) {
+            transitionNames[i] = transitions[i].name();
+            transitionSources[i] = transitions[i].source().id;
+            transitionTargets[i] = transitions[i].target().id;
+        }
+
+        Logger.recordOutput(PREFIX + "StateNames", stateNames);
+        Logger.recordOutput(PREFIX + "StateParents", stateParents);
+        Logger.recordOutput(PREFIX + "TransitionNames", transitionNames);
+        Logger.recordOutput(PREFIX + "TransitionSources", transitionSources);
+        Logger.recordOutput(PREFIX + "TransitionTargets", transitionTargets);
+    }
+
+    /**
+     * Log this cycle's activity.
+     *
+     * @param currentState    The current leaf state
+     * @param transitionIds   The IDs of the transitions taken this cycle
+     * @param transitionCount The number of valid entries in transitionIds
+     * @param history         The history to read dwell times from
+     */
+    void logCycle(State currentState, int[] transitionIds, int transitionCount, TransitionHistory history) {
+        if (currentState != loggedState) {
+            Logger.recordOutput(PREFIX + "CurrentStateId", (long) currentState.id);
+            Logger.recordOutput(PREFIX + "CurrentState", currentState.getDeepName());
+
+            double[] dwellTimes = new double[states.length];
+            for (int i = 0; i < states.length; i++) {
+                dwellTimes[i] = history.getLastDwellTime(states[i]);
+            }
+            Logger.recordOutput(PREFIX + "DwellTimes", dwellTimes);
+            loggedState = currentState;
+        }
+
+        if (transitionCount > 0) {
+            long[] ids = new long[transitionCount];
+            for (int i = 0; i < transitionCount; i++) {
+                ids[i] = transitionIds[i];
+            }
+            Logger.recordOutput(PREFIX + "Transitions", ids);
+            loggedTransitions = true;
+        } else if (loggedTransitions) {
+            Logger.recordOutput(PREFIX + "Transitions", NO_TRANSITIONS);
+            loggedTransitions = false;
+        }
+
+        // Only the active states' loops are polled, so only they can have fired
+        boolean fired = false;
+        for (State state = currentState; state != null; state = state.parentState) {
+            long edges = state.loop.getEdgeCount();
+            if (edges != triggerFires[state.id]) {
+                triggerFires[state.id] = edges;
+                fired = true;
+            }
+        }
+        if (fired)
+            Logger.recordOutput(PREFIX + "TriggerFires", Arrays.copyOf(triggerFires, triggerFires.length));
+    }
+}
@@ -0,0 +1,257 @@
+package me.nabdev.oxidation;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.json.JSONArray;
+
+import edu.wpi.first.networktables.IntegerPublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.StringPublisher;
+import me.nabdev.oxidation.StateMachineBase.TelemetryFormat;
+
+/**
+ * Publishes state machine telemetry from a background thread.
+ * <p>
+ * The robot thread only copies a few primitives (a timestamp, the current
+ * state ID, and the IDs of the transitions taken) into a fixed size single
+ * producer, single consumer ring buffer. The background thread formats and
+ * publishes them. If the buffer is full the event is dropped and counted
+ * rather than blocking the robot thread.
+ * <p>
+ * Names are looked up in a {@link Dictionary} that is built on the robot
+ * thread whenever the tree changes, and passed along with the next event.
+ */
+final class AsyncTelemetry {
+    /** The number of events the buffer can hold (must be a power of two) */
+    static final int CAPACITY = 256;
+    /** Transitions beyond this many in a single cycle are not published */
+    static final int MAX_TRANSITIONS_PER_EVENT = 16;
+    private static final long IDLE_NANOS = 5_000_000;
+
+    /**
+     * Everything the background thread needs to turn IDs into telemetry. Only
+     * built when the tree or telemetry format changes.
+     *
+     * @param format           The telemetry format to publish in
+     * @param jsonTree         The JSON tree, or null if JSON is not published
+     * @param binaryTree       The encoded binary tree, or null if binary is not
+     *                         published
+     * @param stateNames       The deep name of every state, indexed by ID
+     * @param transitionLabels The JSON label of every transition, indexed by ID
+     */
+    record Dictionary(TelemetryFormat format, String jsonTree, byte[] binaryTree, String[] stateNames,
+            String[] transitionLabels) {
+    }
+
+    // Ring buffer slots, indexed by sequence number & mask
+    private final int mask = CAPACITY - 1;
+    private final long[] timestamps = new long[CAPACITY];
+    private final int[] stateIds = new int[CAPACITY];
+    private final int[] transitionCounts = new int[CAPACITY];
+    private final int[] transitionIds = new int[CAPACITY * MAX_TRANSITIONS_PER_EVENT];
+    private final Dictionary[] dictionaries = new Dictionary[CAPACITY];
+
+    // The next sequence number to read (written by the consumer) and to write
+    // (written by the producer)
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    // Only touched by the producer
+    private long cachedHead;
+    private Dictionary pendingDictionary;
+    private int lastStateId = -1;
+    private volatile long dropped;
+
+    // Only touched by the consumer
+    private final NetworkTable table;
+    private final StringPublisher treePublisher;
+    private final StringPublisher currentStatePublisher;
+    private final StringPublisher lastTransitionsPublisher;
+    private BinaryTelemetry binaryTelemetry;
+    private IntegerPublisher droppedPublisher;
+    private Dictionary dictionary;
+    private String publishedStateName;
+    private long publishedDropped;
+
+    private volatile boolean running = true;
+    private final Thread thread;
+
+    AsyncTelemetry(NetworkTable table, StringPublisher treePublisher, StringPublisher currentStatePublisher,
+            StringPublisher lastTransitionsPublisher, BinaryTelemetry binaryTelemetry) {
+        this.table = table;
+        this.treePublisher = treePublisher;
+        this.currentStatePublisher = currentStatePublisher;
+        this.lastTransitionsPublisher = lastTransitionsPublisher;
+        this.binaryTelemetry = binaryTelemetry;
+        thread = new Thread(this::run, "Oxidation Telemetry");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Pass a new dictionary to the background thread with the next event.
+     *
+     * @param dictionary The dictionary for the current tree
+     */
+    void setDictionary(Dictionary dictionary) {
+        pendingDictionary = dictionary;
+    }
+
+    /**
+     * Check whether this cycle has anything to queue: the state changed,
+     * transitions were taken, or the dictionary changed.
+     *
+     * @param stateId         The current leaf state ID
+     * @param transitionCount The number of transitions taken this cycle
+     * @return true if {@link #offer(long, int, int[], int)} would queue an event
+     */
+    boolean hasChanges(int stateId, int transitionCount) {
+        return stateId != lastStateId || transitionCount > 0 || pendingDictionary != null;
+    }
+
+    /**
+     * Queue the telemetry for this cycle. Nothing is queued unless
+     * {@link #hasChanges(int, int)}.
+     *
+     * @param time            The NetworkTables timestamp in microseconds
+     * @param stateId         The current leaf state ID
+     * @param ids             The IDs of the transitions taken this cycle
+     * @param transitionCount The number of valid entries in ids
+     */
+    void offer(long time, int stateId, int[] ids, int transitionCount) {
+        if (!hasChanges(stateId, transitionCount))
+            return;
+
+        long sequence = tail.get();
+        if (sequence - cachedHead >= CAPACITY) {
+            cachedHead = head.get();
+            if (sequence - cachedHead >= CAPACITY) {
+                dropped++;
+                return;
+            }
+        }
+
+        int slot = (int) sequence & mask;
+        int count = Math.min(transitionCount, MAX_TRANSITIONS_PER_EVENT);
+        timestamps[slot] = time;
+        stateIds[slot] = stateId;
+        transitionCounts[slot] = count;
+        System.arraycopy(ids, 0, transitionIds, slot * MAX_TRANSITIONS_PER_EVENT, count);
+        dictionaries[slot] = pendingDictionary;
+        tail.lazySet(sequence + 1);
+
+        pendingDictionary = null;
+        lastStateId = stateId;
+    }
+
+    /**
+     * Get the number of events that were dropped because the buffer was full.
+     *
+     * @return The number of dropped events
+     */
+    long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Get the binary telemetry publisher, so it can be reused after this is
+     * closed.
+     *
+     * @return The binary telemetry publisher, or null if binary telemetry was
+     *         never published
+     */
+    BinaryTelemetry getBinaryTelemetry() {
+        return binaryTelemetry;
+    }
+
+    /**
+     * Stop the background thread, publishing anything still in the buffer first.
+     */
+    void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            drain();
+            LockSupport.parkNanos(IDLE_NANOS);
+        }
+        drain();
+    }
+
+    private void drain() {
+        long sequence = head.get();
+        long end = tail.get();
+        while (sequence < end) {
+            int slot = (int) sequence & mask;
+            if (dictionaries[slot] != null) {
+                dictionary = dictionaries[slot];
+                dictionaries[slot] = null;
+                publishTree(timestamps[slot]);
+            }
+            if (dictionary != null)
+                publishEvent(slot);
+            sequence++;
+            head.lazySet(sequence);
+        }
+
+        long droppedNow = dropped;
+        if (droppedNow != publishedDropped) {
+            if (droppedPublisher == null)
+                droppedPublisher = table.getIntegerTopic("DroppedTelemetry").publish();
+            droppedPublisher.set(droppedNow);
+            publishedDropped = droppedNow;
+        }
+    }
+
+    private void publishTree(long time) {
+        if (dictionary.jsonTree() != null)
+            treePublisher.set(dictionary.jsonTree(), time);
+        if (dictionary.binaryTree() != null) {
+            if (binaryTelemetry == null)
+                binaryTelemetry = new BinaryTelemetry(table);
+            binaryTelemetry.publishTree(dictionary.binaryTree(), time);
+        }
+    }
+
+    private void publishEvent(int slot) {
+        TelemetryFormat format = dictionary.format();
+        boolean json = format == TelemetryFormat.JSON || format == TelemetryFormat.BOTH;
+        boolean binary = format == TelemetryFormat.BINARY || format == TelemetryFormat.BOTH;
+        long time = timestamps[slot];
+        int stateId = stateIds[slot];
+        int count = transitionCounts[slot];
+        int offset = slot * MAX_TRANSITIONS_PER_EVENT;
+
+        String stateName = stateId >= 0 && stateId < dictionary.stateNames().length
+                ? dictionary.stateNames()[stateId]
+                : "null";
+        boolean stateChanged = !stateName.equals(publishedStateName);
+        if (stateChanged) {
+            if (json)
+                currentStatePublisher.set(stateName, time);
+            publishedStateName = stateName;
+        }
+
+        if (json && count > 0) {
+            JSONArray transitions = new JSONArray();
+            for (int i = 0; i < count; i++) {
+                transitions.put(dictionary.transitionLabels()[transitionIds[offset + i]]);
+            }
+            lastTransitionsPublisher.set(transitions.toString(), time);
+        }
+
+        if (binary && (stateChanged || count > 0)) {
+            if (binaryTelemetry == null)
+                binaryTelemetry = new BinaryTelemetry(table);
+            binaryTelemetry.publishCycle(stateId, transitionIds, offset, count, time);
+        }
+    }
+}
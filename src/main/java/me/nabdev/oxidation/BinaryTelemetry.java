@@ -0,0 +1,130 @@
+package me.nabdev.oxidation;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.RawPublisher;
+import me.nabdev.oxidation.State.TransitionInfo;
+
+/**
+ * Publishes state machine telemetry in a compact binary format.
+ * <p>
+ * All values are big endian, IDs are unsigned 16 bit integers, and 0xFFFF
+ * means "none". Every message starts with a one byte format version.
+ * <p>
+ * {@code TreeBinary} is published whenever the tree changes, and acts as the
+ * dictionary for the per-cycle messages:
+ * 
+ * <pre>
+ * u8  version
+ * u16 stateCount
+ *     stateCount x { u16 parentId, u16 nameLength, u8[nameLength] name (UTF-8) }
+ * u16 transitionCount
+ *     transitionCount x { u16 sourceId, u16 targetId, u16 nameLength, u8[nameLength] name (UTF-8) }
+ * </pre>
+ * 
+ * {@code CycleBinary} is published on every cycle where the state changed or a
+ * transition was taken:
+ * 
+ * <pre>
+ * u8  version
+ * u16 currentStateId
+ * u16 transitionCount
+ *     transitionCount x u16 transitionId
+ * </pre>
+ */
+final class BinaryTelemetry {
+    static final byte VERSION = 1;
+    private static final int NONE = 0xFFFF;
+
+    private final RawPublisher treePublisher;
+    private final RawPublisher cyclePublisher;
+    private ByteBuffer cycleBuffer = ByteBuffer.allocate(64);
+
+    BinaryTelemetry(NetworkTable table) {
+        treePublisher = table.getRawTopic("TreeBinary").publish("oxidation-tree");
+        cyclePublisher = table.getRawTopic("CycleBinary").publish("oxidation-cycle");
+    }
+
+    /**
+     * Encode the tree dictionary message.
+     * 
+     * @param states      Every state, indexed by ID
+     * @param transitions Every transition, indexed by ID
+     * @return The encoded message
+     */
+    static byte[] encodeTree(State[] states, TransitionInfo[] transitions) {
+        byte[][] stateNames = new byte[states.length][];
+        byte[][] transitionNames = new byte[transitions.length][];
+        int size = 1 + 2 + 2;
+        for (int i = 0; i < states.length; i++) {
+            stateNames[i] = encodeName(states[i].getName());
+            size += 4 + stateNames[i].length;
+        }
+        for (int i = 0; i < transitions.length; i++) {
+            transitionNames[i] = encodeName(transitions[i].name());
+            size += 6 + transitionNames[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION);
+        buffer.putShort((short) states.length);
+        for (int i = 0; i < states.length; i++) {
+            State parent = states[i].parentState;
+            buffer.putShort((short) (parent == null ? NONE : parent.id));
+            buffer.putShort((short) stateNames[i].length);
+            buffer.put(stateNames[i]);
+        }
+        buffer.putShort((short) transitions.length);
+        for (int i = 0; i < transitions.length; i++) {
+            buffer.putShort((short) transitions[i].source().id);
+            buffer.putShort((short) transitions[i].target().id);
+            buffer.putShort((short) transitionNames[i].length);
+            buffer.put(transitionNames[i]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Publish an encoded tree dictionary message.
+     * 
+     * @param tree The message from {@link #encodeTree(State[], TransitionInfo[])}
+     * @param time The NetworkTables timestamp in microseconds, or 0 for now
+     */
+    void publishTree(byte[] tree, long time) {
+        treePublisher.set(tree, time);
+    }
+
+    /**
+     * Encode and publish a cycle message.
+     * 
+     * @param stateId         The current leaf state ID
+     * @param transitionIds   The IDs of the transitions taken this cycle
+     * @param offset          The index of the first ID in transitionIds
+     * @param transitionCount The number of IDs to publish
+     * @param time            The NetworkTables timestamp in microseconds, or 0
+     *                        for now
+     */
+    void publishCycle(int stateId, int[] transitionIds, int offset, int transitionCount, long time) {
+        int size = 1 + 2 + 2 + 2 * transitionCount;
+        if (cycleBuffer.capacity() < size)
+            cycleBuffer = ByteBuffer.allocate(Math.max(size, cycleBuffer.capacity() * 2));
+
+        cycleBuffer.clear();
+        cycleBuffer.put(VERSION);
+        cycleBuffer.putShort((short) (stateId < 0 ? NONE : stateId));
+        cycleBuffer.putShort((short) transitionCount);
+        for (int i = 0; i < transitionCount; i++) {
+            cycleBuffer.putShort((short) transitionIds[offset + i]);
+        }
+        cyclePublisher.set(cycleBuffer.array(), 0, size, time);
+    }
+
+    private static byte[] encodeName(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > NONE)
+            throw new IllegalArgumentException("Name is too long to encode: " + name);
+        return bytes;
+    }
+}
@@ -0,0 +1,261 @@
+package me.nabdev.oxidation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.Filesystem;
+import me.nabdev.oxidation.util.JSONStreamReader;
+import me.nabdev.oxidation.util.PoseArray;
+
+/**
+ * Loads {@link StateParameters} and {@link PoseArray}s from JSON files,
+ * streaming each file from a memory-mapped buffer straight into the typed
+ * values instead of parsing it into {@link org.json.JSONObject}s first. This
+ * keeps large configs (such as a season's worth of waypoints) quick to load
+ * on robot startup.
+ * <p>
+ * Records are read the same way as {@link StateParameters#bind(Class,
+ * org.json.JSONObject)}: each component is read from the member with its name,
+ * and members without a matching component are skipped. Poses are objects with
+ * {@code x}, {@code y}, and an optional {@code rot} in degrees.
+ */
+public final class ParameterLoader {
+    private ParameterLoader() {
+    }
+
+    /**
+     * Load parameters from a file in the deploy directory.
+     *
+     * @param <P>  The parameters type
+     * @param path The path of the file, relative to the deploy directory
+     * @param type The parameters record class
+     * @return The parameters
+     * @throws IOException If the file can not be read or is not valid JSON
+     */
+    public static <P extends Record & StateParameters> P load(String path, Class<P> type) throws IOException {
+        return load(resolveDeploy(path), type);
+    }
+
+    /**
+     * Load parameters from a file.
+     *
+     * @param <P>  The parameters type
+     * @param file The file, which must hold a single JSON object
+     * @param type The parameters record class
+     * @return The parameters
+     * @throws IOException If the file can not be read or is not valid JSON
+     */
+    public static <P extends Record & StateParameters> P load(Path file, Class<P> type) throws IOException {
+        JSONStreamReader reader = JSONStreamReader.open(file);
+        P parameters = read(reader, type);
+        expectEnd(reader);
+        return parameters;
+    }
+
+    /**
+     * Load a set of named parameters from a file in the deploy directory.
+     *
+     * @param <P>  The parameters type
+     * @param path The path of the file, relative to the deploy directory
+     * @param type The parameters record class
+     * @return The parameters, by name, in the order they appear in the file
+     * @throws IOException If the file can not be read or is not valid JSON
+     */
+    public static <P extends Record & StateParameters> Map<String, P> loadAll(String path, Class<P> type)
+            throws IOException {
+        return loadAll(resolveDeploy(path), type);
+    }
+
+    /**
+     * Load a set of named parameters from a file.
+     *
+     * @param <P>  The parameters type
+     * @param file The file, which must hold a JSON object whose members are each
+     *             a set of parameters
+     * @param type The parameters record class
+     * @return The parameters, by name, in the order they appear in the file
+     * @throws IOException If the file can not be read or is not valid JSON
+     */
+    public static <P extends Record & StateParameters> Map<String, P> loadAll(Path file, Class<P> type)
+            throws IOException {
+        JSONStreamReader reader = JSONStreamReader.open(file);
+        Map<String, P> parameters = new LinkedHashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            parameters.put(name, read(reader, type));
+        }
+        reader.endObject();
+        expectEnd(reader);
+        return parameters;
+    }
+
+    /**
+     * Load a list of poses from a file in the deploy directory.
+     *
+     * @param path The path of the file, relative to the deploy directory
+     * @return The poses
+     * @throws IOException If the file can not be read or is not valid JSON
+     */
+    public static PoseArray loadPoses(String path) throws IOException {
+        return loadPoses(resolveDeploy(path));
+    }
+
+    /**
+     * Load a list of poses from a file.
+     *
+     * @param file The file, which must hold a JSON array of poses
+     * @return The poses
+     * @throws IOException If the file can not be read or is not valid JSON
+     */
+    public static PoseArray loadPoses(Path file) throws IOException {
+        JSONStreamReader reader = JSONStreamReader.open(file);
+        PoseArray poses = readPoses(reader);
+        expectEnd(reader);
+        return poses;
+    }
+
+    /**
+     * Read parameters from the next value of a reader, which must be an object.
+     * This does not call {@link StateParameters#validate()}.
+     *
+     * @param <P>    The parameters type
+     * @param reader The reader
+     * @param type   The parameters record class
+     * @return The parameters
+     * @throws IOException              If the JSON is malformed or a component has
+     *                                  the wrong type
+     * @throws IllegalArgumentException If a component is missing
+     */
+    public static <P extends Record & StateParameters> P read(JSONStreamReader reader, Class<P> type)
+            throws IOException {
+        return type.cast(readRecord(reader, type));
+    }
+
+    /**
+     * Read a list of poses from the next value of a reader, which must be an
+     * array.
+     *
+     * @param reader The reader
+     * @return The poses
+     * @throws IOException If the JSON is malformed or a pose is missing x or y
+     */
+    public static PoseArray readPoses(JSONStreamReader reader) throws IOException {
+        double[] packed = new double[48];
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (count + 3 > packed.length)
+                packed = Arrays.copyOf(packed, packed.length * 2);
+            readPose(reader, packed, count);
+            count += 3;
+        }
+        reader.endArray();
+        return new PoseArray(packed.length == count ? packed : Arrays.copyOf(packed, count));
+    }
+
+    private static void expectEnd(JSONStreamReader reader) throws IOException {
+        // Throws if anything follows the top level value
+        reader.peek();
+    }
+
+    private static Path resolveDeploy(String path) {
+        return Filesystem.getDeployDirectory().toPath().resolve(path);
+    }
+
+    private static Object readRecord(JSONStreamReader reader, Class<?> type) throws IOException {
+        ParameterType parameterType = ParameterType.of(type);
+        Object[] values = new Object[parameterType.names.length];
+        boolean[] found = new boolean[values.length];
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            int index = parameterType.indexOf(name);
+            if (index < 0) {
+                reader.skipValue();
+                continue;
+            }
+            try {
+                values[index] = readValue(reader, parameterType.kinds[index], parameterType.types[index]);
+            } catch (IOException e) {
+                throw new IOException(
+                        "Invalid parameter \"" + name + "\" for " + type.getSimpleName() + ": " + e.getMessage(), e);
+            }
+            found[index] = true;
+        }
+        reader.endObject();
+
+        for (int i = 0; i < found.length; i++) {
+            if (!found[i])
+                throw parameterType.missing(i);
+        }
+        return parameterType.construct(values);
+    }
+
+    private static Object readValue(JSONStreamReader reader, ParameterType.Kind kind, Class<?> type)
+            throws IOException {
+        return switch (kind) {
+            case DOUBLE -> reader.nextDouble();
+            case INT -> reader.nextInt();
+            case LONG -> reader.nextLong();
+            case BOOLEAN -> reader.nextBoolean();
+            case STRING -> reader.nextString();
+            case POSE2D -> {
+                double[] pose = new double[3];
+                readPose(reader, pose, 0);
+                yield new Pose2d(pose[0], pose[1], new Rotation2d(pose[2]));
+            }
+            case TRANSLATION2D -> {
+                double[] pose = new double[3];
+                readPose(reader, pose, 0);
+                yield new Translation2d(pose[0], pose[1]);
+            }
+            case POSE_ARRAY -> readPoses(reader);
+            case DOUBLE_ARRAY -> {
+                double[] values = new double[16];
+                int count = 0;
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (count == values.length)
+                        values = Arrays.copyOf(values, count * 2);
+                    values[count++] = reader.nextDouble();
+                }
+                reader.endArray();
+                yield Arrays.copyOf(values, count);
+            }
+            case PARAMETERS -> readRecord(reader, type);
+        };
+    }
+
+    // Reads a pose object into x, y, and rotation in radians at packed[offset]
+    private static void readPose(JSONStreamReader reader, double[] packed, int offset) throws IOException {
+        boolean hasX = false;
+        boolean hasY = false;
+        packed[offset + 2] = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "x" -> {
+                    packed[offset] = reader.nextDouble();
+                    hasX = true;
+                }
+                case "y" -> {
+                    packed[offset + 1] = reader.nextDouble();
+                    hasY = true;
+                }
+                case "rot" -> packed[offset + 2] = Math.toRadians(reader.nextDouble());
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (!hasX || !hasY)
+            throw new IOException("Pose does not contain x and y keys at byte " + reader.getPosition());
+    }
+}
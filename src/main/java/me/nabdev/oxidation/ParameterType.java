@@ -0,0 +1,138 @@
+package me.nabdev.oxidation;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.RecordComponent;
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import me.nabdev.oxidation.util.PoseArray;
+
+/**
+ * The components of a {@link StateParameters} record and its canonical
+ * constructor, shared by {@link StateParameters#bind(Class, org.json.JSONObject)}
+ * and {@link ParameterLoader} so that both support the same component types and
+ * create records the same way. Looked up once per record class.
+ */
+final class ParameterType {
+    /** The types a component can have. */
+    enum Kind {
+        DOUBLE, INT, LONG, BOOLEAN, STRING, POSE2D, TRANSLATION2D, POSE_ARRAY, DOUBLE_ARRAY, PARAMETERS;
+
+        static Kind of(Class<?> type) {
+            if (type == double.class)
+                return DOUBLE;
+            if (type == int.class)
+                return INT;
+            if (type == long.class)
+                return LONG;
+            if (type == boolean.class)
+                return BOOLEAN;
+            if (type == String.class)
+                return STRING;
+            if (type == Pose2d.class)
+                return POSE2D;
+            if (type == Translation2d.class)
+                return TRANSLATION2D;
+            if (type == PoseArray.class)
+                return POSE_ARRAY;
+            if (type == double[].class)
+                return DOUBLE_ARRAY;
+            if (type.isRecord() && StateParameters.class.isAssignableFrom(type))
+                return PARAMETERS;
+            throw new IllegalArgumentException("Unsupported parameter type " + type.getSimpleName());
+        }
+    }
+
+    private static final ClassValue<ParameterType> TYPES = new ClassValue<>() {
+        @Override
+        protected ParameterType computeValue(Class<?> type) {
+            return new ParameterType(type);
+        }
+    };
+
+    final Class<?> type;
+    /** The name of each component, in declaration order */
+    final String[] names;
+    final Class<?>[] types;
+    final Kind[] kinds;
+    private final Constructor<?> constructor;
+    private final Map<String, Integer> indices = new HashMap<>();
+
+    private ParameterType(Class<?> type) {
+        RecordComponent[] components = type.getRecordComponents();
+        this.type = type;
+        names = new String[components.length];
+        types = new Class<?>[components.length];
+        kinds = new Kind[components.length];
+        for (int i = 0; i < components.length; i++) {
+            names[i] = components[i].getName();
+            types[i] = components[i].getType();
+            indices.put(names[i], i);
+        }
+        try {
+            constructor = type.getDeclaredConstructor(types);
+            constructor.setAccessible(true);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Could not find the constructor of " + type.getSimpleName(), e);
+        }
+        // After the constructor is found, so that a class that is not a record
+        // fails with that rather than with an unsupported component
+        for (int i = 0; i < components.length; i++) {
+            kinds[i] = Kind.of(types[i]);
+        }
+    }
+
+    /**
+     * Get the components of a parameters record class.
+     *
+     * @param type The parameters record class
+     * @return Its components and constructor
+     */
+    static ParameterType of(Class<?> type) {
+        return TYPES.get(type);
+    }
+
+    /**
+     * Get the index of a component.
+     *
+     * @param name The name of the component
+     * @return The index, or -1 if the record has no component with that name
+     */
+    int indexOf(String name) {
+        Integer index = indices.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Create a record from its component values. Exceptions thrown by the
+     * record's constructor (such as from a compact constructor that checks its
+     * arguments) are thrown as they are.
+     *
+     * @param values The value of each component, in declaration order
+     * @return The record
+     */
+    Object construct(Object[] values) {
+        try {
+            return constructor.newInstance(values);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw new RuntimeException("Could not create " + type.getSimpleName(), e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Could not create " + type.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Create the error for a component that was not given a value.
+     *
+     * @param index The index of the component
+     * @return The exception to throw
+     */
+    IllegalArgumentException missing(int index) {
+        return new IllegalArgumentException("Missing parameter \"" + names[index] + "\" for " + type.getSimpleName());
+    }
+}
@@ -0,0 +1,33 @@
+package me.nabdev.oxidation;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * The mode the robot is in, as used by
+ * {@link State#withModeTransitions(State, State, State, State)}.
+ */
+public enum RobotMode {
+    /** The robot is disabled */
+    DISABLED,
+    /** Teleop is enabled */
+    TELEOP,
+    /** Autonomous is enabled */
+    AUTONOMOUS,
+    /** Test is enabled */
+    TEST;
+
+    /**
+     * Get the current mode from the driver station.
+     * 
+     * @return The current robot mode
+     */
+    public static RobotMode fromDriverStation() {
+        if (DriverStation.isDisabled())
+            return DISABLED;
+        if (DriverStation.isAutonomous())
+            return AUTONOMOUS;
+        if (DriverStation.isTest())
+            return TEST;
+        return TELEOP;
+    }
+}
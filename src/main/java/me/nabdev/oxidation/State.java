@@ -4,7 +4,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
 import java.util.function.BooleanSupplier;
 import java.util.function.Supplier;
 
@@ -12,7 +11,7 @@ import org.json.JSONObject;
 
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj2.command.Command;
-import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import me.nabdev.oxidation.util.SchedulerAdapter;
 import me.nabdev.oxidation.util.SmartEventLoop;
 import me.nabdev.oxidation.util.SmartTrigger;
 
@@ -32,6 +31,10 @@ public abstract class State {
     public record TransitionInfo(State target, State source, BooleanSupplier condition, int priority, String name) {
     }
 
+    // The entrance condition of children added without one, so the validator can
+    // tell them apart from real entrances
+    static final BooleanSupplier NEVER = () -> false;
+
     /**
      * The parent state of this state. If this is null, this state is the root (or
      * improperly configured!).
@@ -43,16 +46,24 @@ public abstract class State {
      * execution
      * of actions within this state.
      */
-    protected final SmartEventLoop loop = new SmartEventLoop();
+    protected final SmartEventLoop loop;
 
     /**
      * The parameters for this state. This can be used to make reusable states that
      * can be configured.
+     * <p>
+     * Reading this is a string-keyed lookup, so conditions and commands that run
+     * every cycle should use {@link StateParameters} instead. When the state was
+     * created with typed parameters, this holds their JSON form for telemetry.
      */
     protected final JSONObject parameters;
 
-    Map<State, List<TransitionInfo>> transitions = new HashMap<>();
-    List<TransitionInfo> entranceConditions = new ArrayList<>();
+    // Null unless the state was created with typed parameters
+    final StateParameters typedParameters;
+
+    // Both kept sorted by priority, see insertByPriority
+    Map<State, TransitionInfo[]> transitions = new HashMap<>();
+    TransitionInfo[] entranceConditions = new TransitionInfo[0];
     List<State> children = new ArrayList<>();
 
     List<Supplier<Command>> startCommands = new ArrayList<>();
@@ -60,8 +71,14 @@ public abstract class State {
 
     private final StateMachineBase stateMachine;
 
-    private boolean hasDefaultChild = false;
+    boolean hasDefaultChild = false;
     String name = this.getClass().getSimpleName();
+    private String deepName;
+
+    // Index into the state machine's compiled tables and distance from the root,
+    // assigned when the tables are built
+    int id = -1;
+    int depth = 0;
 
     /**
      * Create a new state under the given state machine.
@@ -70,7 +87,11 @@ public abstract class State {
      */
     public State(StateMachineBase stateMachine) {
         this.stateMachine = stateMachine;
+        this.loop = new SmartEventLoop(stateMachine.getConditionCache());
+        this.loop.setScheduler(stateMachine.getScheduler());
+        this.loop.suspend();
         this.parameters = new JSONObject();
+        this.typedParameters = null;
     }
 
     /**
@@ -82,7 +103,30 @@ public abstract class State {
      */
     public State(StateMachineBase stateMachine, JSONObject parameters) {
         this.stateMachine = stateMachine;
+        this.loop = new SmartEventLoop(stateMachine.getConditionCache());
+        this.loop.setScheduler(stateMachine.getScheduler());
+        this.loop.suspend();
         this.parameters = parameters;
+        this.typedParameters = null;
+    }
+
+    /**
+     * Create a new state under the given state machine with typed parameters. The
+     * subclass should keep its own reference to the parameters to read them
+     * without casting. They are checked with {@link StateParameters#validate()}
+     * when the state machine is validated.
+     * 
+     * @param stateMachine The state machine this state belongs to
+     * @param parameters   The parameters for this state, used to configure it
+     *                     (can be used to make reusable states)
+     */
+    public State(StateMachineBase stateMachine, StateParameters parameters) {
+        this.stateMachine = stateMachine;
+        this.loop = new SmartEventLoop(stateMachine.getConditionCache());
+        this.loop.setScheduler(stateMachine.getScheduler());
+        this.loop.suspend();
+        this.parameters = parameters.toJSON();
+        this.typedParameters = parameters;
     }
 
     /**
@@ -107,7 +151,8 @@ public abstract class State {
      * @return This state
      */
     public State withTransition(State state, BooleanSupplier condition, int priority, String name) {
-        return withTransition(new TransitionInfo(state, this, condition, priority, name));
+        return withTransition(
+                new TransitionInfo(state, this, stateMachine.getConditionCache().get(condition), priority, name));
     }
 
     /**
@@ -140,13 +185,8 @@ public abstract class State {
      * @return This state
      */
     public State addTransition(State before, TransitionInfo transition) {
-        if (transitions.containsKey(before)) {
-            transitions.get(before).add(transition);
-        } else {
-            List<TransitionInfo> list = new ArrayList<>();
-            list.add(transition);
-            transitions.put(before, list);
-        }
+        TransitionInfo[] existing = transitions.getOrDefault(before, new TransitionInfo[0]);
+        transitions.put(before, insertByPriority(existing, transition));
         stateMachine.markDirty();
         return this;
     }
@@ -163,13 +203,13 @@ public abstract class State {
      */
     public State withModeTransitions(State disabled, State teleop, State auto, State test) {
         if (disabled != this)
-            withTransition(disabled, DriverStation::isDisabled, "Robot Disabled");
+            withTransition(disabled, stateMachine.getModeCondition(RobotMode.DISABLED), "Robot Disabled");
         if (teleop != this)
-            withTransition(teleop, DriverStation::isTeleopEnabled, "Teleop Enabled");
+            withTransition(teleop, stateMachine.getModeCondition(RobotMode.TELEOP), "Teleop Enabled");
         if (auto != this)
-            withTransition(auto, DriverStation::isAutonomousEnabled, "Auto Enabled");
+            withTransition(auto, stateMachine.getModeCondition(RobotMode.AUTONOMOUS), "Auto Enabled");
         if (test != this)
-            withTransition(test, DriverStation::isTestEnabled, "Test Enabled");
+            withTransition(test, stateMachine.getModeCondition(RobotMode.TEST), "Test Enabled");
         return this;
     }
 
@@ -184,13 +224,13 @@ public abstract class State {
      */
     public State withModeTransitions(State disabled, State teleop, State test) {
         if (disabled != this)
-            withTransition(disabled, DriverStation::isDisabled, "Robot Disabled");
+            withTransition(disabled, stateMachine.getModeCondition(RobotMode.DISABLED), "Robot Disabled");
         if (teleop != this)
-            withTransition(teleop, DriverStation::isTeleopEnabled, "Teleop Enabled");
+            withTransition(teleop, stateMachine.getModeCondition(RobotMode.TELEOP), "Teleop Enabled");
         if (teleop != this)
-            withTransition(teleop, DriverStation::isAutonomousEnabled, "Auto Enabled");
+            withTransition(teleop, stateMachine.getModeCondition(RobotMode.AUTONOMOUS), "Auto Enabled");
         if (test != this)
-            withTransition(test, DriverStation::isTestEnabled, "Test Enabled");
+            withTransition(test, stateMachine.getModeCondition(RobotMode.TEST), "Test Enabled");
         return this;
     }
 
@@ -217,7 +257,7 @@ public abstract class State {
      * @return This state
      */
     public State withChild(State child) {
-        addChild(child, () -> false, Integer.MAX_VALUE, false, "impossible");
+        addChild(child, NEVER, Integer.MAX_VALUE, false, "impossible");
         return this;
     }
 
@@ -239,6 +279,7 @@ public abstract class State {
      */
     public State withNoChildren() {
         transitions.clear();
+        stateMachine.markDirty();
         return this;
     }
 
@@ -250,6 +291,8 @@ public abstract class State {
      */
     public State withName(String name) {
         this.name = name;
+        invalidateDeepName();
+        stateMachine.markDirty();
         return this;
     }
 
@@ -264,13 +307,23 @@ public abstract class State {
 
     /**
      * Get the name of this state, including the names of all parent states.
+     * <p>
+     * The result is cached until this state or one of its parents is renamed or
+     * reparented, so the same String instance is returned until then.
      * 
      * @return The recurisive name of this state
      */
     public String getDeepName() {
-        if (parentState == null)
-            return getName();
-        return parentState.getDeepName() + "/" + getName();
+        if (deepName == null)
+            deepName = parentState == null ? getName() : parentState.getDeepName() + "/" + getName();
+        return deepName;
+    }
+
+    private void invalidateDeepName() {
+        deepName = null;
+        for (State child : children) {
+            child.invalidateDeepName();
+        }
     }
 
     /**
@@ -296,22 +349,30 @@ public abstract class State {
      */
     public void onExit() {
         loop.stop();
-        CommandScheduler.getInstance().cancel(currentStartCommands.toArray(new Command[0]));
-        currentStartCommands.clear();
+        if (!currentStartCommands.isEmpty()) {
+            SchedulerAdapter scheduler = stateMachine.getScheduler();
+            for (int i = 0; i < currentStartCommands.size(); i++) {
+                scheduler.cancel(currentStartCommands.get(i));
+            }
+            currentStartCommands.clear();
+        }
     }
 
     /**
      * Fires when the state is entered
      */
     public void onEnter() {
-        for (Supplier<Command> commandSup : startCommands) {
-            Command command = commandSup.get();
+        // Re-baselined on the first poll rather than now, once this is the current
+        // state and its start commands are scheduled
+        loop.suspend();
+        for (int i = 0; i < startCommands.size(); i++) {
+            Command command = startCommands.get(i).get();
             if (command == null) {
                 DriverStation.reportWarning("A command passed to startWhenActive was null", false);
                 continue;
             }
             currentStartCommands.add(command);
-            command.schedule();
+            stateMachine.getScheduler().schedule(command);
         }
     };
 
@@ -360,7 +421,14 @@ public abstract class State {
         if (parentState != null)
             parentState.run();
 
+        StateMachineProfiler profiler = stateMachine.profiler;
+        if (profiler == null) {
+            loop.poll();
+            return;
+        }
+        long start = System.nanoTime();
         loop.poll();
+        profiler.recordPoll(this, System.nanoTime() - start);
     }
 
     // boolean checkTransitions() {
@@ -378,52 +446,61 @@ public abstract class State {
     // return false;
     // }
 
-    record TransitionEvalResult(State finalState, List<TransitionInfo> transitions) {
-    }
-
-    TransitionEvalResult evalTransitions(Stack<State> nodesToSearch, List<TransitionInfo> transitionList) {
-        State next = nodesToSearch.pop();
-        if (next == this)
-            return new TransitionEvalResult(this, transitionList);
-
-        TransitionInfo transition = evaluateBestTransition(transitions.get(next));
-        if (transition != null) {
-            transitionList.add(transition);
-            return stateMachine.traverseTransitions(transition.target(), transitionList);
-        }
-        if (nodesToSearch.isEmpty())
-            nodesToSearch.push(next.evaluateEntranceState());
-
-        return next.evalTransitions(nodesToSearch, transitionList);
-    }
-
-    static TransitionInfo evaluateBestTransition(List<TransitionInfo> transitions) {
+    /**
+     * Find the transition that should be taken out of a sorted list of
+     * transitions. Since the list is sorted by priority, this is simply the first
+     * transition whose condition is true, and no conditions after it are
+     * evaluated. When several transitions share a priority, the one that was
+     * added first wins.
+     * 
+     * @param transitions The transitions to evaluate, sorted by priority
+     * @return The transition to take, or null if none are active
+     */
+    static TransitionInfo evaluateBestTransition(TransitionInfo[] transitions) {
         if (transitions == null)
             return null;
-        TransitionInfo best = null;
-        for (TransitionInfo i : transitions) {
-            if ((best == null || best.priority > i.priority) && i.condition.getAsBoolean()) {
-                best = i;
-            }
+        for (int i = 0; i < transitions.length; i++) {
+            if (transitions[i].condition.getAsBoolean())
+                return transitions[i];
         }
-        return best;
+        return null;
+    }
+
+    /**
+     * Insert a transition into a list sorted by priority (lower first), after any
+     * transitions with the same priority so that ties keep the order they were
+     * added in.
+     * 
+     * @param transitions The sorted transitions
+     * @param transition  The transition to insert
+     * @return A new sorted array containing the transition
+     */
+    static TransitionInfo[] insertByPriority(TransitionInfo[] transitions, TransitionInfo transition) {
+        int index = transitions.length;
+        while (index > 0 && transitions[index - 1].priority > transition.priority)
+            index--;
+
+        TransitionInfo[] result = new TransitionInfo[transitions.length + 1];
+        System.arraycopy(transitions, 0, result, 0, index);
+        result[index] = transition;
+        System.arraycopy(transitions, index, result, index + 1, transitions.length - index);
+        return result;
     }
 
-    State evaluateEntranceState() {
-        if (entranceConditions.isEmpty())
-            return this;
+    State evaluateEntranceChild() {
         TransitionInfo next = evaluateBestTransition(entranceConditions);
         if (next == null || next.target() == null)
             throw new RuntimeException(
                     "A state (" + getDeepName()
                             + ") was unable to determine which child to transition to. Consider adding a default state.");
-        return next.target().evaluateEntranceState();
+        return next.target();
     }
 
     void setParentState(State parentState) {
         if (this.parentState != null)
             throw new RuntimeException("A state can only have one parent state");
         this.parentState = parentState;
+        invalidateDeepName();
     }
 
     private void addChild(State child, BooleanSupplier condition, int priority, boolean isDefault,
@@ -435,7 +512,9 @@ public abstract class State {
         }
         child.setParentState(this);
         children.add(child);
-        entranceConditions.add(new TransitionInfo(child, this, condition, priority, entranceConditionName));
+        entranceConditions = insertByPriority(entranceConditions,
+                new TransitionInfo(child, this, stateMachine.getConditionCache().get(condition), priority,
+                        entranceConditionName));
         stateMachine.markDirty();
     }
 }
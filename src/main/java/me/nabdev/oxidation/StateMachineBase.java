@@ -1,18 +1,28 @@
 package me.nabdev.oxidation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Stack;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import edu.wpi.first.networktables.NetworkTable;
-import edu.wpi.first.networktables.NetworkTableEntry;
 import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.StringPublisher;
 import edu.wpi.first.wpilibj.DriverStation;
-import me.nabdev.oxidation.State.TransitionEvalResult;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj2.command.Command;
 import me.nabdev.oxidation.State.TransitionInfo;
+import me.nabdev.oxidation.util.CachedCondition;
+import me.nabdev.oxidation.util.ConditionCache;
+import me.nabdev.oxidation.util.ConditionRecording;
+import me.nabdev.oxidation.util.EventCondition;
+import me.nabdev.oxidation.util.SchedulerAdapter;
+import me.nabdev.oxidation.util.Signal;
 
 /**
  * The base class for a state machine.
@@ -21,10 +31,45 @@ import me.nabdev.oxidation.State.TransitionInfo;
  * the constructor.
  */
 public abstract class StateMachineBase {
-    private static NetworkTable table = NetworkTableInstance.getDefault().getTable("StateMachine");
-    private static NetworkTableEntry treeEntry = table.getEntry("Tree");
-    private static NetworkTableEntry currentStateEntry = table.getEntry("CurrentState");
-    private static NetworkTableEntry lastTransitionsEntry = table.getEntry("LastTransitions");
+    // Only loaded once telemetry is first published, so that state machines with
+    // telemetry disabled never touch NetworkTables
+    private static class Topics {
+        private static NetworkTable table = NetworkTableInstance.getDefault().getTable("StateMachine");
+        private static StringPublisher treePublisher = table.getStringTopic("Tree").publish();
+        private static StringPublisher currentStatePublisher = table.getStringTopic("CurrentState").publish();
+        private static StringPublisher lastTransitionsPublisher = table.getStringTopic("LastTransitions").publish();
+    }
+
+    // Must be initialized before the root state, which uses them
+    private final ConditionCache conditionCache = new ConditionCache();
+    private SchedulerAdapter scheduler = SchedulerAdapter.COMMAND_SCHEDULER;
+    // Given to every state's event loop, so that changing the scheduler also
+    // applies to states that already exist
+    private final SchedulerAdapter schedulerForwarder = new SchedulerAdapter() {
+        @Override
+        public void schedule(Command command) {
+            scheduler.schedule(command);
+        }
+
+        @Override
+        public void cancel(Command command) {
+            scheduler.cancel(command);
+        }
+
+        @Override
+        public boolean isScheduled(Command command) {
+            return scheduler.isScheduled(command);
+        }
+    };
+
+    // Microseconds, FPGA time unless replaced for simulation
+    private LongSupplier clock = RobotController::getFPGATime;
+    private Supplier<RobotMode> modeSource = RobotMode::fromDriverStation;
+    // Created when the first mode transition is added
+    private EventCondition[] modeConditions;
+    private Signal modeSignal;
+    private RobotMode lastMode;
+
     /**
      * The root state of the state tree. This state will always be active, and all
      * other states will be children of this state.
@@ -40,8 +85,58 @@ public abstract class StateMachineBase {
      */
     public State currentState;
 
-    private String currentTree = "";
+    /**
+     * The formats that the state machine can publish its telemetry in.
+     */
+    public enum TelemetryFormat {
+        /** Human readable JSON strings (the default) */
+        JSON,
+        /** Compact binary encoding with integer IDs and a separate name dictionary */
+        BINARY,
+        /** Both JSON and binary */
+        BOTH,
+        /** Nothing is published (useful for running without NetworkTables) */
+        NONE
+    }
+
+    /** The number of transitions kept in the transition history by default */
+    public static final int DEFAULT_HISTORY_CAPACITY = 256;
+
+    private TelemetryFormat telemetryFormat = TelemetryFormat.JSON;
+    private BinaryTelemetry binaryTelemetry;
+    private AsyncTelemetry asyncTelemetry;
+    private AdvantageKitLogger advantageKitLogger;
+    private boolean advantageKitTreeDirty = false;
+
     private boolean treeDirty = false;
+    private boolean validateOnStartup = true;
+    private String publishedStateName;
+
+    // Reused every cycle so that evaluating transitions does not allocate
+    private int[] lastTransitionIds = new int[8];
+    private int lastTransitionCount = 0;
+
+    // Compiled transition tables, rebuilt whenever the tree is marked dirty
+    private boolean transitionsDirty = true;
+    private State[] states = new State[0];
+    private TransitionInfo[] transitionsById = new TransitionInfo[0];
+    private int[][] compiledTransitions = new int[0][];
+    private int[] ownTransitionsStart = new int[0];
+    private State[] enterPath = new State[0];
+    // Whether every transition that applies to a state is an EventCondition
+    private boolean[] eventDriven = new boolean[0];
+
+    // The state settled on the last time transitions were evaluated, and the
+    // signal stamp at that time
+    private State settledState;
+    private long settledSignalVersion;
+
+    private TransitionHistory history = new TransitionHistory(DEFAULT_HISTORY_CAPACITY, () -> clock.getAsLong());
+    // The clock is only read on cycles where something happens
+    private long cycleTime = -1;
+
+    // Null unless profiling is enabled, read by State.run()
+    StateMachineProfiler profiler;
 
     /**
      * Execute the state machine
@@ -52,22 +147,212 @@ public abstract class StateMachineBase {
                     null);
             return;
         }
-        List<TransitionInfo> lastTransitions = checkTransitions();
+        StateMachineProfiler profiler = this.profiler;
+        long start = profiler != null ? System.nanoTime() : 0;
+
+        conditionCache.advance();
+        lastTransitionCount = 0;
+        cycleTime = -1;
+        State newState = evaluateTransitions();
+        long evaluated = profiler != null ? System.nanoTime() : 0;
+
+        boolean stateChanged = newState != currentState;
+        if (stateChanged)
+            changeState(newState);
+        long changed = profiler != null ? System.nanoTime() : 0;
+
         currentState.run();
-        if (currentState != null) {
-            currentStateEntry.setString(currentState.getDeepName());
-        } else {
-            currentStateEntry.setString("null");
+        long ran = profiler != null ? System.nanoTime() : 0;
+
+        ConditionRecording recording = conditionCache.getRecording();
+        if (recording != null)
+            recording.setCheckpoint(currentState.id);
+
+        publishTelemetry();
+        if (advantageKitLogger != null) {
+            if (advantageKitTreeDirty) {
+                advantageKitLogger.logTree(states, transitionsById);
+                advantageKitTreeDirty = false;
+            }
+            advantageKitLogger.logCycle(currentState, lastTransitionIds, lastTransitionCount, history);
+        }
+
+        if (profiler != null) {
+            long end = System.nanoTime();
+            profiler.record(StateMachineProfiler.Phase.TRANSITIONS, evaluated - start);
+            if (stateChanged)
+                profiler.record(StateMachineProfiler.Phase.STATE_CHANGE, changed - evaluated);
+            profiler.record(StateMachineProfiler.Phase.POLL, ran - changed);
+            profiler.record(StateMachineProfiler.Phase.TELEMETRY, end - ran);
+            profiler.record(StateMachineProfiler.Phase.TOTAL, end - start);
+            profiler.endCycle();
+        }
+    }
+
+    /**
+     * Start (or stop) profiling this state machine. While a profiler is set, every
+     * cycle is timed and reported through it.
+     * 
+     * @param profiler The profiler to record timings with, or null to stop
+     *                 profiling
+     */
+    public void setProfiler(StateMachineProfiler profiler) {
+        if (this.profiler != null)
+            this.profiler.detach();
+        this.profiler = profiler;
+        if (profiler != null)
+            profiler.attach(states);
+    }
+
+    /**
+     * Publish the tree, current state, and last transitions to NetworkTables. The
+     * tree is only published after it changes, and the current state only when it
+     * changes.
+     */
+    private void publishTelemetry() {
+        if (telemetryFormat == TelemetryFormat.NONE)
+            return;
+
+        boolean json = telemetryFormat == TelemetryFormat.JSON || telemetryFormat == TelemetryFormat.BOTH;
+        boolean binary = telemetryFormat == TelemetryFormat.BINARY || telemetryFormat == TelemetryFormat.BOTH;
+        if (asyncTelemetry != null) {
+            queueTelemetry(json, binary);
+            return;
+        }
+
+        if (binary && binaryTelemetry == null)
+            binaryTelemetry = new BinaryTelemetry(Topics.table);
+
+        if (treeDirty) {
+            if (transitionsDirty)
+                compileTransitions();
+            if (json)
+                Topics.treePublisher.set(getObjectForState(rootState).toString());
+            if (binary)
+                binaryTelemetry.publishTree(BinaryTelemetry.encodeTree(states, transitionsById), 0);
+            treeDirty = false;
+        }
+
+        // Deep names are cached, so a new instance means the state (or its name)
+        // changed
+        String stateName = currentState != null ? currentState.getDeepName() : "null";
+        boolean stateChanged = stateName != publishedStateName;
+        if (stateChanged) {
+            if (json)
+                Topics.currentStatePublisher.set(stateName);
+            publishedStateName = stateName;
         }
-        treeEntry.setString(getTree());
-        if (lastTransitions.size() > 0) {
+
+        if (json && lastTransitionCount > 0) {
             JSONArray transitions = new JSONArray();
-            for (TransitionInfo transition : lastTransitions) {
+            for (int i = 0; i < lastTransitionCount; i++) {
+                TransitionInfo transition = transitionsById[lastTransitionIds[i]];
                 transitions
                         .put(transition.name() + transition.target().getDeepName() + transition.source().getDeepName());
             }
-            lastTransitionsEntry.setString(transitions.toString());
+            Topics.lastTransitionsPublisher.set(transitions.toString());
         }
+
+        if (binary && (stateChanged || lastTransitionCount > 0))
+            binaryTelemetry.publishCycle(currentState != null ? currentState.id : -1, lastTransitionIds, 0,
+                    lastTransitionCount, 0);
+    }
+
+    /**
+     * Hand this cycle's telemetry to the background publisher. Names and the tree
+     * are only gathered here when the tree changes, otherwise this just copies the
+     * current state and transition IDs.
+     */
+    private void queueTelemetry(boolean json, boolean binary) {
+        if (treeDirty) {
+            if (transitionsDirty)
+                compileTransitions();
+            String[] stateNames = new String[states.length];
+            for (int i = 0; i < states.length; i++) {
+                stateNames[i] = states[i].getDeepName();
+            }
+            String[] transitionLabels = new String[transitionsById.length];
+            for (int i = 0; i < transitionsById.length; i++) {
+                TransitionInfo transition = transitionsById[i];
+                transitionLabels[i] = transition.name() + transition.target().getDeepName()
+                        + transition.source().getDeepName();
+            }
+            asyncTelemetry.setDictionary(new AsyncTelemetry.Dictionary(telemetryFormat,
+                    json ? getObjectForState(rootState).toString() : null,
+                    binary ? BinaryTelemetry.encodeTree(states, transitionsById) : null, stateNames,
+                    transitionLabels));
+            treeDirty = false;
+        }
+        // Most cycles have nothing to queue, so the clock is only read when needed
+        if (asyncTelemetry.hasChanges(currentState.id, lastTransitionCount))
+            asyncTelemetry.offer(now(), currentState.id, lastTransitionIds, lastTransitionCount);
+    }
+
+    /**
+     * Publish telemetry from a background thread instead of the robot thread. The
+     * robot thread then only queues the current state and transition IDs each
+     * cycle, and the background thread builds and publishes the JSON and binary
+     * messages.
+     * <p>
+     * If the background thread falls behind, events are dropped rather than
+     * blocking the robot thread (see {@link #getDroppedTelemetryEvents()}).
+     * 
+     * @param enabled Whether to publish telemetry from a background thread
+     */
+    public void setAsyncTelemetry(boolean enabled) {
+        if (enabled == (asyncTelemetry != null))
+            return;
+        if (enabled) {
+            asyncTelemetry = new AsyncTelemetry(Topics.table, Topics.treePublisher, Topics.currentStatePublisher,
+                    Topics.lastTransitionsPublisher, binaryTelemetry);
+        } else {
+            asyncTelemetry.close();
+            binaryTelemetry = asyncTelemetry.getBinaryTelemetry();
+            asyncTelemetry = null;
+        }
+        // Make sure the new publisher gets the tree and current state
+        treeDirty = true;
+        publishedStateName = null;
+    }
+
+    /**
+     * Record state machine activity with AdvantageKit's Logger. The current state,
+     * transitions taken, dwell times, and trigger fires are logged under
+     * StateMachine/ as primitive arrays of state and transition IDs, along with
+     * the names for those IDs whenever the tree changes.
+     * <p>
+     * This is independent of the NetworkTables telemetry, which can be turned off
+     * with {@link TelemetryFormat#NONE} when using AdvantageKit.
+     * 
+     * @param enabled Whether to log to AdvantageKit
+     */
+    public void setAdvantageKitLogging(boolean enabled) {
+        advantageKitLogger = enabled ? new AdvantageKitLogger() : null;
+        advantageKitTreeDirty = true;
+    }
+
+    /**
+     * Get the number of telemetry events that were dropped because the background
+     * publisher fell behind.
+     * 
+     * @return The number of dropped events, or 0 if telemetry is not published
+     *         asynchronously
+     */
+    public long getDroppedTelemetryEvents() {
+        return asyncTelemetry != null ? asyncTelemetry.getDropped() : 0;
+    }
+
+    /**
+     * Set the format(s) that telemetry is published to NetworkTables in. The
+     * binary format is much smaller, but requires a dashboard that understands it.
+     * 
+     * @param format The telemetry format to use
+     */
+    public void setTelemetryFormat(TelemetryFormat format) {
+        telemetryFormat = format;
+        // Make sure the newly enabled format gets the tree and current state
+        treeDirty = true;
+        publishedStateName = null;
     }
 
     /**
@@ -83,66 +368,398 @@ public abstract class StateMachineBase {
         markDirty();
     }
 
+    /**
+     * Get the cache used to share condition samples between transitions and
+     * triggers. A new cycle is started at the beginning of every call to
+     * {@link #periodic()}, so each condition is sampled at most once per cycle.
+     * 
+     * @return The condition cache for this state machine
+     */
+    public ConditionCache getConditionCache() {
+        return conditionCache;
+    }
+
+    /**
+     * Set the clock used to timestamp transitions, state entries, and telemetry.
+     * Defaults to the FPGA timestamp; replace it to run the state machine faster
+     * than real time in simulation.
+     * 
+     * @param clock Returns the current time in microseconds
+     */
+    public void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Set where mode transitions get the robot mode from. Defaults to the driver
+     * station.
+     * 
+     * @param modeSource Returns the current robot mode
+     */
+    public void setModeSource(Supplier<RobotMode> modeSource) {
+        this.modeSource = modeSource;
+        lastMode = null;
+    }
+
+    /**
+     * Set the scheduler that commands bound to states and triggers are scheduled
+     * through. Defaults to WPILib's CommandScheduler. This applies to states that
+     * have already been created.
+     * 
+     * @param scheduler The scheduler to use
+     */
+    public void setScheduler(SchedulerAdapter scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Get the scheduler that states and their event loops should use. Follows
+     * {@link #setScheduler(SchedulerAdapter)}.
+     */
+    SchedulerAdapter getScheduler() {
+        return schedulerForwarder;
+    }
+
+    /**
+     * Get the shared condition that is true while the robot is in a mode. These
+     * are only re-evaluated when the mode changes.
+     */
+    EventCondition getModeCondition(RobotMode mode) {
+        if (modeConditions == null) {
+            modeSignal = new Signal();
+            RobotMode[] modes = RobotMode.values();
+            modeConditions = new EventCondition[modes.length];
+            for (RobotMode m : modes) {
+                modeConditions[m.ordinal()] = EventCondition.of(() -> modeSource.get() == m, modeSignal);
+            }
+        }
+        return modeConditions[mode.ordinal()];
+    }
+
     /**
      * Called when the state machine is started.
      */
     public void onStartup() {
+        if (transitionsDirty)
+            compileTransitions();
+        if (validateOnStartup) {
+            for (ValidationIssue issue : validate()) {
+                if (issue.severity() == ValidationIssue.Severity.ERROR)
+                    DriverStation.reportError("State machine: " + issue, false);
+                else
+                    DriverStation.reportWarning("State machine: " + issue, false);
+            }
+        }
+        long now = clock.getAsLong();
+        for (State state = currentState; state != null; state = state.parentState) {
+            history.recordEnter(state, now);
+        }
         currentState.onEnter();
+
+        ConditionRecording recording = conditionCache.getRecording();
+        if (recording != null)
+            recording.setCheckpoint(currentState.id);
     }
 
-    private String getTree() {
-        if (treeDirty) {
-            currentTree = getObjectForState(rootState).toString();
-            treeDirty = false;
+    /**
+     * Check the structure of the state tree for problems that would otherwise only
+     * show up at runtime:
+     * <ul>
+     * <li>Parent states without a default child, which throw if none of their
+     * entrance conditions are true</li>
+     * <li>States that can never be entered from the initial state</li>
+     * <li>Transitions that share a condition and lead back to each other, which
+     * never settle once that condition is true</li>
+     * <li>Transitions or entrance conditions with the same explicit priority</li>
+     * <li>Trees that are deep enough, or have enough transitions, to be expensive
+     * to evaluate</li>
+     * </ul>
+     * This is run by {@link #onStartup()} unless disabled with
+     * {@link #setValidateOnStartup(boolean)}, and any problems are reported to the
+     * driver station.
+     * 
+     * @return The problems found, which is empty if there are none
+     */
+    public List<ValidationIssue> validate() {
+        if (transitionsDirty)
+            compileTransitions();
+        return StateMachineValidator.validate(states, transitionsById, currentState);
+    }
+
+    /**
+     * Set whether {@link #onStartup()} validates the state tree and reports
+     * problems to the driver station. Enabled by default.
+     * 
+     * @param validate Whether to validate on startup
+     */
+    public void setValidateOnStartup(boolean validate) {
+        validateOnStartup = validate;
+    }
+
+    /**
+     * Start recording every transition and trigger condition value this state
+     * machine samples, along with the state it settles on each cycle. Start
+     * recording before {@link #onStartup()} to be able to replay the recording
+     * from the beginning with {@link StateMachineReplay}.
+     * 
+     * @return The recording that samples are added to
+     */
+    public ConditionRecording startRecording() {
+        ConditionRecording recording = new ConditionRecording();
+        conditionCache.setRecording(recording);
+        return recording;
+    }
+
+    /**
+     * Stop recording condition values.
+     * 
+     * @return The finished recording, or null if nothing was being recorded
+     */
+    public ConditionRecording stopRecording() {
+        ConditionRecording recording = conditionCache.getRecording();
+        conditionCache.setRecording(null);
+        return recording;
+    }
+
+    /**
+     * Get the history of transitions taken by this state machine, which can also
+     * be queried for when each state was last entered and how long states stay
+     * active.
+     * 
+     * @return The transition history
+     */
+    public TransitionHistory getTransitionHistory() {
+        return history;
+    }
+
+    /**
+     * Set how many transitions are kept in the transition history. This clears
+     * the history.
+     * 
+     * @param capacity The number of transitions to keep
+     */
+    public void setTransitionHistoryCapacity(int capacity) {
+        history = new TransitionHistory(capacity, () -> clock.getAsLong());
+        if (!transitionsDirty)
+            history.reset(states, transitionsById);
+    }
+
+    private long now() {
+        if (cycleTime < 0)
+            cycleTime = clock.getAsLong();
+        return cycleTime;
+    }
+
+    /**
+     * Exit every state that is active now but not under the new state (leaf
+     * first), then enter every state on the way down to the new state (outermost
+     * first). The common ancestor is found by walking up from the deeper of the
+     * two states, so this is O(depth) and does not allocate.
+     * 
+     * @param newState The leaf state to switch to
+     */
+    private void changeState(State newState) {
+        State exiting = currentState;
+        State entering = newState;
+        int enterCount = 0;
+
+        long now = now();
+        while (exiting.depth > entering.depth) {
+            exiting.onExit();
+            history.recordExit(exiting, now);
+            exiting = exiting.parentState;
+        }
+        while (entering.depth > exiting.depth) {
+            enterPath[enterCount++] = entering;
+            entering = entering.parentState;
+        }
+        while (exiting != entering) {
+            exiting.onExit();
+            history.recordExit(exiting, now);
+            exiting = exiting.parentState;
+            enterPath[enterCount++] = entering;
+            entering = entering.parentState;
         }
-        return currentTree;
+
+        for (int i = enterCount - 1; i >= 0; i--) {
+            history.recordEnter(enterPath[i], now);
+            enterPath[i].onEnter();
+            enterPath[i] = null;
+        }
+        currentState = newState;
     }
 
-    private List<TransitionInfo> checkTransitions() {
-        TransitionEvalResult transitionEvalResult = traverseTransitions(currentState, new ArrayList<TransitionInfo>());
-        State newState = transitionEvalResult.finalState();
-        if (newState != currentState) {
-            Stack<State> before = getStateTree(currentState);
-            Stack<State> after = getStateTree(newState);
+    void markDirty() {
+        treeDirty = true;
+        transitionsDirty = true;
+    }
+
+    /**
+     * Find the state to switch to this cycle. If every transition out of the
+     * current state is an {@link EventCondition} and no {@link Signal} has been
+     * raised since they were last evaluated, none of them can have changed, so
+     * evaluating them is skipped.
+     * 
+     * @return The leaf state that was settled on
+     */
+    private State evaluateTransitions() {
+        if (transitionsDirty)
+            compileTransitions();
 
-            while (!before.isEmpty() && !after.isEmpty() && before.peek() == after.peek()) {
-                before.pop();
-                after.pop();
+        if (modeSignal != null) {
+            RobotMode mode = modeSource.get();
+            if (mode != lastMode) {
+                lastMode = mode;
+                modeSignal.signal();
             }
+        }
+
+        // Replays feed recorded values rather than raising signals, so every cycle
+        // has to be evaluated
+        Signal.pollWatched();
+        long signalVersion = Signal.getGlobalVersion();
+        if (!conditionCache.isReplaying() && currentState == settledState && signalVersion == settledSignalVersion
+                && currentState.id >= 0 && currentState.id < states.length && eventDriven[currentState.id])
+            return currentState;
+
+        State newState = traverseTransitions(currentState);
+        settledState = newState;
+        settledSignalVersion = signalVersion;
+        return newState;
+    }
+
+    /**
+     * Follow transitions starting at the given state until no more transitions
+     * fire, resolving entrance conditions whenever a parent state is reached.
+     * 
+     * The IDs of every transition taken are recorded in the last transitions
+     * buffer.
+     * 
+     * @param state The state to start from
+     * @return The leaf state that was settled on
+     */
+    State traverseTransitions(State state) {
+        if (transitionsDirty)
+            compileTransitions();
+
+        State target = state;
+        int start = 0;
+        // Every step enters a state or takes a transition, so a traversal that
+        // settles can't take more steps than there are states and transitions
+        int stepsLeft = states.length + transitionsById.length;
+        while (true) {
+            if (--stepsLeft < 0)
+                throw new RuntimeException("Transitions starting at " + state.getDeepName()
+                        + " kept firing without settling (last at " + target.getDeepName()
+                        + "). Check for transitions that lead back to each other and can be true at the same time.");
+            if (target.id < 0 || target.id >= states.length || states[target.id] != target)
+                throw new RuntimeException("A state (" + target.getDeepName()
+                        + ") is not part of the state tree. Did you forget to add it as a child?");
 
-            Stack<State> exitStack = new Stack<>();
-            while (!before.isEmpty()) {
-                exitStack.push(before.pop());
+            int transition = firstActiveTransition(compiledTransitions[target.id], start);
+            if (transition >= 0) {
+                recordTransition(target, transition);
+                target = transitionsById[transition].target();
+                start = 0;
+                continue;
             }
-            while (!exitStack.isEmpty()) {
-                exitStack.pop().onExit();
+
+            if (target.entranceConditions.length == 0)
+                return target;
+
+            target = target.evaluateEntranceChild();
+            start = ownTransitionsStart[target.id];
+        }
+    }
+
+    private int firstActiveTransition(int[] table, int start) {
+        for (int i = start; i < table.length; i++) {
+            if (transitionsById[table[i]].condition().getAsBoolean())
+                return table[i];
+        }
+        return -1;
+    }
+
+    private void recordTransition(State from, int id) {
+        if (lastTransitionCount == lastTransitionIds.length)
+            lastTransitionIds = Arrays.copyOf(lastTransitionIds, lastTransitionCount * 2);
+        lastTransitionIds[lastTransitionCount++] = id;
+        history.recordTransition(now(), conditionCache.getCycle(), from.id, transitionsById[id].target().id, id);
+    }
+
+    /**
+     * Assign every state and transition in the tree an ID and flatten the
+     * transitions that apply to each state (its own and those of all of its
+     * ancestors) into a single table of transition IDs. Tables are ordered
+     * outermost level first, and by priority within a level, so the first
+     * transition whose condition is true is the one that should be taken.
+     */
+    void compileTransitions() {
+        List<State> ordered = new ArrayList<>();
+        collectStates(rootState, ordered);
+
+        states = ordered.toArray(new State[0]);
+        compiledTransitions = new int[states.length][];
+        ownTransitionsStart = new int[states.length];
+        int maxDepth = 0;
+        for (int i = 0; i < states.length; i++) {
+            State state = states[i];
+            state.id = i;
+            state.depth = state.parentState == null ? 0 : state.parentState.depth + 1;
+            maxDepth = Math.max(maxDepth, state.depth);
+        }
+        enterPath = new State[maxDepth];
+
+        // Parents always come before their children, so their tables are ready
+        List<TransitionInfo> allTransitions = new ArrayList<>();
+        for (State state : states) {
+            if (state.parentState == null) {
+                compiledTransitions[state.id] = new int[0];
+                continue;
             }
+            int[] inherited = compiledTransitions[state.parentState.id];
+            TransitionInfo[] own = state.parentState.transitions.getOrDefault(state, new TransitionInfo[0]);
 
-            while (!after.isEmpty()) {
-                after.pop().onEnter();
+            // Each level is already sorted by priority as transitions are added
+            int[] table = Arrays.copyOf(inherited, inherited.length + own.length);
+            for (int i = 0; i < own.length; i++) {
+                table[inherited.length + i] = allTransitions.size();
+                allTransitions.add(own[i]);
             }
+            compiledTransitions[state.id] = table;
+            ownTransitionsStart[state.id] = inherited.length;
+        }
+        transitionsById = allTransitions.toArray(new TransitionInfo[0]);
 
-            currentState = newState;
+        eventDriven = new boolean[states.length];
+        for (State state : states) {
+            eventDriven[state.id] = isEventDriven(compiledTransitions[state.id]);
         }
-        return transitionEvalResult.transitions();
-    }
+        settledState = null;
+        advantageKitTreeDirty = true;
+        transitionsDirty = false;
+        history.reset(states, transitionsById);
 
-    void markDirty() {
-        treeDirty = true;
+        if (profiler != null)
+            profiler.attach(states);
     }
 
-    TransitionEvalResult traverseTransitions(State state, List<TransitionInfo> transitions) {
-        return rootState.evalTransitions(getStateTree(state), transitions);
+    private boolean isEventDriven(int[] table) {
+        for (int id : table) {
+            BooleanSupplier condition = transitionsById[id].condition();
+            if (condition instanceof CachedCondition cached)
+                condition = cached.getCondition();
+            if (!(condition instanceof EventCondition))
+                return false;
+        }
+        return true;
     }
 
-    Stack<State> getStateTree(State state) {
-        Stack<State> stateTree = new Stack<>();
-        State cur = state;
-        while (cur.parentState != null) {
-            stateTree.push(cur);
-            cur = cur.parentState;
+    private static void collectStates(State state, List<State> states) {
+        states.add(state);
+        for (State child : state.children) {
+            collectStates(child, states);
         }
-        return stateTree;
     }
 
     JSONObject getObjectForState(State state) {
@@ -0,0 +1,162 @@
+package me.nabdev.oxidation;
+
+import java.util.Arrays;
+
+import me.nabdev.oxidation.util.ProfilerSink;
+import me.nabdev.oxidation.util.SmartEventLoop;
+import me.nabdev.oxidation.util.TimingHistogram;
+
+/**
+ * Records how long each part of {@link StateMachineBase#periodic()} takes, as
+ * well as how long each active state's event loop, each of its bindings, and
+ * each of its trigger conditions take to poll. The timings are reported to a
+ * {@link ProfilerSink} every few cycles and then reset.
+ * <p>
+ * Recording never allocates, and a state machine without a profiler does not
+ * read the clock at all.
+ */
+public final class StateMachineProfiler {
+    /**
+     * The timed phases of a state machine cycle.
+     */
+    public enum Phase {
+        /** Evaluating transitions and entrance conditions */
+        TRANSITIONS("Phase/Transitions"),
+        /** Running onExit and onEnter when the state changes */
+        STATE_CHANGE("Phase/StateChange"),
+        /** Polling the event loops of the active states */
+        POLL("Phase/Poll"),
+        /** Publishing telemetry */
+        TELEMETRY("Phase/Telemetry"),
+        /** The whole cycle */
+        TOTAL("Phase/Total");
+
+        private final String key;
+
+        Phase(String key) {
+            this.key = key;
+        }
+    }
+
+    private final ProfilerSink sink;
+    private final int reportPeriod;
+    private final TimingHistogram[] phases = new TimingHistogram[Phase.values().length];
+    private State[] states = new State[0];
+    private TimingHistogram[] statePolls = new TimingHistogram[0];
+    private String[] statePollNames = new String[0];
+    private String[][] bindingNames = new String[0][];
+    private String[][] triggerNames = new String[0][];
+    private int cycles = 0;
+
+    /**
+     * Create a profiler that reports once every 50 cycles (once a second at the
+     * default loop rate).
+     * 
+     * @param sink Where to send the timings
+     */
+    public StateMachineProfiler(ProfilerSink sink) {
+        this(sink, 50);
+    }
+
+    /**
+     * Create a profiler.
+     * 
+     * @param sink         Where to send the timings
+     * @param reportPeriod How many cycles to record before each report
+     */
+    public StateMachineProfiler(ProfilerSink sink, int reportPeriod) {
+        if (reportPeriod < 1)
+            throw new IllegalArgumentException("The report period must be at least one cycle");
+        this.sink = sink;
+        this.reportPeriod = reportPeriod;
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new TimingHistogram();
+        }
+    }
+
+    /**
+     * Get the timings recorded for a phase since the last report.
+     * 
+     * @param phase The phase
+     * @return The timings for that phase
+     */
+    public TimingHistogram getPhaseTiming(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    void record(Phase phase, long nanos) {
+        phases[phase.ordinal()].record(nanos);
+    }
+
+    void recordPoll(State state, long nanos) {
+        if (state.id >= 0 && state.id < statePolls.length)
+            statePolls[state.id].record(nanos);
+    }
+
+    /**
+     * Start profiling the given states, discarding any timings recorded for the
+     * previous set of states.
+     */
+    void attach(State[] newStates) {
+        detach();
+        states = newStates;
+        statePolls = new TimingHistogram[states.length];
+        statePollNames = new String[states.length];
+        bindingNames = new String[states.length][0];
+        triggerNames = new String[states.length][0];
+        for (int i = 0; i < states.length; i++) {
+            statePolls[i] = new TimingHistogram();
+            statePollNames[i] = "Poll/" + states[i].getDeepName();
+            states[i].loop.setProfiling(true);
+        }
+    }
+
+    void detach() {
+        for (State state : states) {
+            state.loop.setProfiling(false);
+        }
+    }
+
+    void endCycle() {
+        if (++cycles < reportPeriod)
+            return;
+        cycles = 0;
+
+        for (Phase phase : Phase.values()) {
+            report(phase.key, phases[phase.ordinal()]);
+        }
+        for (int i = 0; i < states.length; i++) {
+            report(statePollNames[i], statePolls[i]);
+            SmartEventLoop loop = states[i].loop;
+            for (int binding = 0; binding < loop.getBindingCount(); binding++) {
+                TimingHistogram timing = loop.getBindingTiming(binding);
+                if (timing != null)
+                    report(name(bindingNames, "Bindings/", i, binding), timing);
+            }
+            for (int trigger = 0; trigger < loop.getTriggerCount(); trigger++) {
+                TimingHistogram timing = loop.getTriggerTiming(trigger);
+                if (timing != null)
+                    report(name(triggerNames, "Triggers/", i, trigger), timing);
+            }
+        }
+    }
+
+    private void report(String name, TimingHistogram histogram) {
+        if (histogram.getCount() == 0)
+            return;
+        sink.report(name, histogram);
+        histogram.reset();
+    }
+
+    // Names are built the first time they are needed and then reused
+    private String name(String[][] cache, String prefix, int state, int index) {
+        String[] names = cache[state];
+        if (index >= names.length) {
+            names = Arrays.copyOf(names, index + 1);
+            cache[state] = names;
+        }
+        if (names[index] == null)
+            names[index] = prefix + states[state].getDeepName() + "/" + index;
+        return names[index];
+    }
+}
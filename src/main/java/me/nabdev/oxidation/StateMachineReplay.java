@@ -0,0 +1,124 @@
+package me.nabdev.oxidation;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import me.nabdev.oxidation.util.ConditionCache;
+import me.nabdev.oxidation.util.ConditionRecording;
+import me.nabdev.oxidation.util.SchedulerAdapter;
+
+/**
+ * Re-runs a state machine against a {@link ConditionRecording} made with
+ * {@link StateMachineBase#startRecording()}, as fast as possible and without
+ * sampling any real conditions.
+ * <p>
+ * Conditions are matched to the recording by the order they were created in,
+ * so the state machine must be constructed by the same code that made the
+ * recording.
+ * <p>
+ * The replay runs headless and gives the same result every time: the state
+ * machine's clock advances by {@link #FRAME_MICROS} each frame, the robot mode
+ * stays disabled (recorded mode transitions are still replayed, since they are
+ * conditions), commands are only tracked as scheduled or not, never run, and
+ * the tree is not validated on startup.
+ */
+public final class StateMachineReplay {
+    /** The simulated time between frames, the standard 20ms loop period */
+    public static final long FRAME_MICROS = 20_000;
+
+    private StateMachineReplay() {
+    }
+
+    /**
+     * The outcome of a replay.
+     *
+     * @param stateIds         The ID of the leaf state the replay settled on in
+     *                         each frame (frame 0 is startup)
+     * @param firstDivergence  The first frame where the replay settled on a
+     *                         different state than the recording, or -1 if every
+     *                         frame matched
+     * @param divergentStateId The recorded state ID at the first divergent frame,
+     *                         or -1 if every frame matched
+     */
+    public record Result(int[] stateIds, int firstDivergence, int divergentStateId) {
+        /**
+         * Check whether the replay reproduced the recorded sequence of states.
+         *
+         * @return true if every frame matched
+         */
+        public boolean matches() {
+            return firstDivergence < 0;
+        }
+    }
+
+    /**
+     * Construct a state machine and replay a recording through it.
+     *
+     * @param factory   Creates a fresh instance of the recorded state machine, with
+     *                  its initial state set
+     * @param recording The recording to replay
+     * @return The states the replay settled on, and where (if anywhere) they
+     *         differ from the recording
+     */
+    public static Result run(Supplier<? extends StateMachineBase> factory, ConditionRecording recording) {
+        StateMachineBase machine = factory.get();
+        if (machine.currentState == null)
+            throw new IllegalArgumentException("The replayed state machine has not been given an initial state");
+        ConditionCache cache = machine.getConditionCache();
+        machine.setTelemetryFormat(StateMachineBase.TelemetryFormat.NONE);
+        machine.setClock(() -> Math.max(cache.getReplayFrame(), 0) * FRAME_MICROS);
+        machine.setModeSource(() -> RobotMode.DISABLED);
+        machine.setScheduler(new TrackingScheduler());
+        // Reporting needs the driver station, and the tree was already checked
+        // when it was recorded
+        machine.setValidateOnStartup(false);
+
+        int frameCount = recording.getFrameCount();
+        int[] stateIds = new int[frameCount];
+        int firstDivergence = -1;
+        int divergentStateId = -1;
+
+        cache.setReplay(recording);
+        try {
+            for (int frame = 0; frame < frameCount; frame++) {
+                if (frame == 0)
+                    machine.onStartup();
+                else
+                    machine.periodic();
+
+                stateIds[frame] = machine.currentState.id;
+                if (firstDivergence < 0 && stateIds[frame] != recording.getCheckpoint(frame)) {
+                    firstDivergence = frame;
+                    divergentStateId = recording.getCheckpoint(frame);
+                }
+            }
+        } finally {
+            cache.setReplay(null);
+        }
+        return new Result(stateIds, firstDivergence, divergentStateId);
+    }
+
+    // Keeps track of which commands are scheduled, so that toggles and level
+    // bindings behave as they did, without running any of them
+    private static final class TrackingScheduler implements SchedulerAdapter {
+        private final Set<Command> m_scheduled = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        @Override
+        public void schedule(Command command) {
+            m_scheduled.add(command);
+        }
+
+        @Override
+        public void cancel(Command command) {
+            m_scheduled.remove(command);
+        }
+
+        @Override
+        public boolean isScheduled(Command command) {
+            return m_scheduled.contains(command);
+        }
+    }
+}
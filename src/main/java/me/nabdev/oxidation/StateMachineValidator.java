@@ -0,0 +1,227 @@
+package me.nabdev.oxidation;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import me.nabdev.oxidation.State.TransitionInfo;
+import me.nabdev.oxidation.ValidationIssue.Severity;
+import me.nabdev.oxidation.util.CachedCondition;
+
+/**
+ * Checks the structure of a compiled state tree for problems that would
+ * otherwise only show up at runtime. See {@link StateMachineBase#validate()}.
+ */
+final class StateMachineValidator {
+    /** States deeper than this are reported as expensive to evaluate */
+    static final int MAX_DEPTH = 8;
+    /**
+     * States with more transitions than this (including inherited ones) are
+     * reported as expensive to evaluate
+     */
+    static final int MAX_TRANSITIONS = 64;
+
+    private final State[] states;
+    private final TransitionInfo[] transitions;
+    private final List<ValidationIssue> issues = new ArrayList<>();
+
+    private StateMachineValidator(State[] states, TransitionInfo[] transitions) {
+        this.states = states;
+        this.transitions = transitions;
+    }
+
+    /**
+     * Validate a compiled state tree.
+     *
+     * @param states       Every state, indexed by ID (parents before children)
+     * @param transitions  Every transition, indexed by ID
+     * @param initialState The state the machine starts in, or null if it has not
+     *                     been set (reachability is not checked)
+     * @return The problems found
+     */
+    static List<ValidationIssue> validate(State[] states, TransitionInfo[] transitions, State initialState) {
+        StateMachineValidator validator = new StateMachineValidator(states, transitions);
+        validator.checkParameters();
+        validator.checkEntrances();
+        validator.checkPriorities();
+        validator.checkCost();
+        validator.checkCycles();
+        if (initialState != null)
+            validator.checkReachability(initialState);
+        return validator.issues;
+    }
+
+    private void report(Severity severity, State state, String message) {
+        issues.add(new ValidationIssue(severity, state, message));
+    }
+
+    private static TransitionInfo[] ownTransitions(State state) {
+        if (state.parentState == null)
+            return new TransitionInfo[0];
+        return state.parentState.transitions.getOrDefault(state, new TransitionInfo[0]);
+    }
+
+    private static boolean isAncestorOrSelf(State ancestor, State state) {
+        for (State s = state; s != null; s = s.parentState) {
+            if (s == ancestor)
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isPlaceholder(TransitionInfo entrance) {
+        return entrance.condition() instanceof CachedCondition cached && cached.getCondition() == State.NEVER;
+    }
+
+    private void checkParameters() {
+        for (State state : states) {
+            if (state.typedParameters == null)
+                continue;
+            try {
+                state.typedParameters.validate();
+            } catch (RuntimeException e) {
+                // Anything validate() throws means the parameters can not be used, not
+                // only the IllegalArgumentException it is documented to throw
+                report(Severity.ERROR, state, "has invalid parameters: "
+                        + (e.getMessage() != null ? e.getMessage() : e.toString()));
+            }
+        }
+    }
+
+    private void checkEntrances() {
+        for (State state : states) {
+            if (state.parentState == null || state.children.isEmpty() || state.hasDefaultChild)
+                continue;
+            report(Severity.WARNING, state, "has children but no default child, so entering it throws if none of its "
+                    + "entrance conditions are true");
+        }
+    }
+
+    private void checkPriorities() {
+        for (State state : states) {
+            checkPriorities(state, ownTransitions(state), "transitions");
+            checkPriorities(state, state.entranceConditions, "entrance conditions");
+        }
+    }
+
+    private void checkPriorities(State state, TransitionInfo[] sorted, String kind) {
+        for (int i = 1; i < sorted.length; i++) {
+            int priority = sorted[i].priority();
+            // Integer.MAX_VALUE is the default priority, where ties are expected
+            if (priority == Integer.MAX_VALUE || sorted[i - 1].priority() != priority)
+                continue;
+            report(Severity.WARNING, state, "has " + kind + " \"" + sorted[i - 1].name() + "\" and \""
+                    + sorted[i].name() + "\" with the same priority (" + priority
+                    + "), so only the order they were added in decides between them");
+        }
+    }
+
+    private void checkCost() {
+        int[] transitionCounts = new int[states.length];
+        for (State state : states) {
+            int inherited = state.parentState == null ? 0 : transitionCounts[state.parentState.id];
+            transitionCounts[state.id] = inherited + ownTransitions(state).length;
+
+            if (state.depth == MAX_DEPTH + 1)
+                report(Severity.WARNING, state, "is nested more than " + MAX_DEPTH
+                        + " levels deep, which makes state changes and transition evaluation more expensive");
+            if (transitionCounts[state.id] > MAX_TRANSITIONS
+                    && (state.parentState == null || transitionCounts[state.parentState.id] <= MAX_TRANSITIONS))
+                report(Severity.WARNING, state, "has " + transitionCounts[state.id] + " transitions (including "
+                        + "inherited ones) that may all be checked every cycle while it is active");
+        }
+    }
+
+    /**
+     * Find transitions that share a condition and can lead back to each other.
+     * Once that condition is true, each of them fires in turn within the same
+     * cycle and transitions are never settled.
+     */
+    private void checkCycles() {
+        Map<BooleanSupplier, List<TransitionInfo>> byCondition = new IdentityHashMap<>();
+        for (TransitionInfo transition : transitions) {
+            byCondition.computeIfAbsent(transition.condition(), c -> new ArrayList<>()).add(transition);
+        }
+
+        for (List<TransitionInfo> group : byCondition.values()) {
+            int[] visit = new int[group.size()];
+            for (int i = 0; i < group.size(); i++) {
+                List<TransitionInfo> cycle = new ArrayList<>();
+                if (visit[i] == 0 && findCycle(group, i, visit, cycle)) {
+                    StringBuilder names = new StringBuilder();
+                    for (TransitionInfo transition : cycle) {
+                        if (names.length() > 0)
+                            names.append(" -> ");
+                        names.append('"').append(transition.name()).append("\" (to ")
+                                .append(transition.target().getDeepName()).append(')');
+                    }
+                    report(Severity.ERROR, cycle.get(0).source(), "has transitions that share a condition and "
+                            + "lead back to each other, so they never settle once it is true: " + names);
+                    break;
+                }
+            }
+        }
+    }
+
+    // Depth first search, visit is 0 for unvisited, 1 for on the current path and
+    // 2 for done
+    private static boolean findCycle(List<TransitionInfo> group, int index, int[] visit,
+            List<TransitionInfo> path) {
+        visit[index] = 1;
+        path.add(group.get(index));
+        State target = group.get(index).target();
+        for (int next = 0; next < group.size(); next++) {
+            // The next transition can fire once the target is active if it belongs to
+            // the target, one of its parents, or a child the target may enter
+            State owner = group.get(next).source();
+            if (!isAncestorOrSelf(owner, target) && !isAncestorOrSelf(target, owner))
+                continue;
+            if (visit[next] == 1) {
+                // Drop the part of the path leading up to the cycle
+                while (path.get(0) != group.get(next))
+                    path.remove(0);
+                return true;
+            }
+            if (visit[next] == 0 && findCycle(group, next, visit, path))
+                return true;
+        }
+        visit[index] = 2;
+        path.remove(path.size() - 1);
+        return false;
+    }
+
+    private void checkReachability(State initialState) {
+        boolean[] active = new boolean[states.length];
+        boolean[] entered = new boolean[states.length];
+        List<State> queue = new ArrayList<>();
+        queue.add(initialState);
+        for (int i = 0; i < queue.size(); i++) {
+            State state = queue.get(i);
+            if (state.id < 0 || state.id >= states.length || states[state.id] != state || entered[state.id])
+                continue;
+            entered[state.id] = true;
+
+            // Every parent of an active state is active, so their transitions apply
+            for (State s = state; s != null; s = s.parentState) {
+                active[s.id] = true;
+                for (TransitionInfo transition : ownTransitions(s)) {
+                    queue.add(transition.target());
+                }
+            }
+            for (TransitionInfo entrance : state.entranceConditions) {
+                // Children added with withChild(child) are only entered by transitions
+                if (!isPlaceholder(entrance))
+                    queue.add(entrance.target());
+            }
+        }
+
+        for (State state : states) {
+            // Only report the outermost unreachable state of each branch
+            if (!active[state.id] && (state.parentState == null || active[state.parentState.id]))
+                report(Severity.WARNING, state, "can never be entered from the initial state ("
+                        + initialState.getDeepName() + ")");
+        }
+    }
+}
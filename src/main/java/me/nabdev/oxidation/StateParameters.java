@@ -0,0 +1,154 @@
+package me.nabdev.oxidation;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.RecordComponent;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import me.nabdev.oxidation.util.JSONUtils;
+import me.nabdev.oxidation.util.PoseArray;
+
+/**
+ * Typed parameters for a reusable {@link State}, normally a record:
+ *
+ * <pre>
+ * record DriveToParameters(Pose2d target, double tolerance) implements StateParameters {
+ *     public void validate() {
+ *         if (tolerance &lt;= 0)
+ *             throw new IllegalArgumentException("tolerance must be positive");
+ *     }
+ * }
+ * </pre>
+ *
+ * The state keeps the record in a field of its own type and reads its
+ * components directly, so conditions and commands that run every cycle never
+ * look values up by name. Parameters are checked with {@link #validate()} when
+ * the state machine is {@link StateMachineBase#validate() validated}, and
+ * converted to a {@link JSONObject} once for telemetry.
+ * <p>
+ * Parameters stored as JSON can be converted once, at construction, with
+ * {@link #bind(Class, JSONObject)}, or streamed straight from a file with
+ * {@link ParameterLoader}.
+ */
+public interface StateParameters {
+    /**
+     * Check that the parameters are usable. Called when the state machine is
+     * validated, which by default happens on startup.
+     *
+     * @throws IllegalArgumentException If the parameters are invalid
+     */
+    default void validate() {
+    }
+
+    /**
+     * Convert the parameters to JSON for telemetry. Only called once, when the
+     * state is constructed.
+     * <p>
+     * By default, each component of a record is written under its own name.
+     * Numbers, booleans, strings, {@link Pose2d}s, {@link Translation2d}s,
+     * {@link PoseArray}s, {@code double[]}s and nested parameters are written as
+     * JSON values, and anything else as its string form.
+     *
+     * @return The parameters as JSON
+     */
+    default JSONObject toJSON() {
+        JSONObject obj = new JSONObject();
+        if (!(this instanceof Record))
+            return obj;
+        for (RecordComponent component : getClass().getRecordComponents()) {
+            Object value;
+            try {
+                value = component.getAccessor().invoke(this);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new RuntimeException("Could not read parameter " + component.getName(), e);
+            }
+            obj.put(component.getName(), toJSONValue(value));
+        }
+        return obj;
+    }
+
+    private static Object toJSONValue(Object value) {
+        if (value == null || value instanceof Number || value instanceof Boolean || value instanceof String)
+            return value;
+        if (value instanceof Pose2d pose)
+            return JSONUtils.fromPose2d(pose);
+        if (value instanceof Translation2d translation)
+            return JSONUtils.fromTranslation2d(translation);
+        if (value instanceof PoseArray poses)
+            return JSONUtils.fromPoseArray(poses);
+        if (value instanceof StateParameters parameters)
+            return parameters.toJSON();
+        if (value instanceof double[] array) {
+            JSONArray json = new JSONArray();
+            for (double d : array) {
+                json.put(d);
+            }
+            return json;
+        }
+        return value.toString();
+    }
+
+    /**
+     * Create a parameters record from JSON, passing the value with each
+     * component's name to the record's canonical constructor. Components can be
+     * primitives, strings, {@link Pose2d}s, {@link Translation2d}s and
+     * {@link PoseArray}s (read with {@link JSONUtils}), {@code double[]}s, or
+     * nested parameter records.
+     * <p>
+     * This is meant to be called once, when the state is constructed, and does
+     * not call {@link #validate()}.
+     *
+     * @param <P>  The parameters type
+     * @param type The parameters record class
+     * @param json The JSON to read
+     * @return The parameters
+     * @throws IllegalArgumentException If a component is missing or has the wrong
+     *                                  type
+     */
+    static <P extends Record & StateParameters> P bind(Class<P> type, JSONObject json) {
+        return type.cast(bindRecord(type, json));
+    }
+
+    private static Object bindRecord(Class<?> type, JSONObject json) {
+        ParameterType parameterType = ParameterType.of(type);
+        Object[] values = new Object[parameterType.names.length];
+        for (int i = 0; i < values.length; i++) {
+            String name = parameterType.names[i];
+            if (!json.has(name))
+                throw parameterType.missing(i);
+            try {
+                values[i] = readValue(parameterType.kinds[i], parameterType.types[i], json, name);
+            } catch (JSONException e) {
+                throw new IllegalArgumentException(
+                        "Invalid parameter \"" + name + "\" for " + type.getSimpleName() + ": " + e.getMessage(), e);
+            }
+        }
+        return parameterType.construct(values);
+    }
+
+    private static Object readValue(ParameterType.Kind kind, Class<?> type, JSONObject json, String name) {
+        return switch (kind) {
+            case DOUBLE -> json.getDouble(name);
+            case INT -> json.getInt(name);
+            case LONG -> json.getLong(name);
+            case BOOLEAN -> json.getBoolean(name);
+            case STRING -> json.getString(name);
+            case POSE2D -> JSONUtils.getPose2d(json.getJSONObject(name));
+            case TRANSLATION2D -> JSONUtils.getTranslation2d(json.getJSONObject(name));
+            case POSE_ARRAY -> JSONUtils.getPoseArray(json.getJSONArray(name));
+            case DOUBLE_ARRAY -> {
+                JSONArray array = json.getJSONArray(name);
+                double[] values = new double[array.length()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = array.getDouble(i);
+                }
+                yield values;
+            }
+            case PARAMETERS -> bindRecord(type, json.getJSONObject(name));
+        };
+    }
+}
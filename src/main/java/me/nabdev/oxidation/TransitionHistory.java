@@ -0,0 +1,239 @@
+package me.nabdev.oxidation;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+import me.nabdev.oxidation.State.TransitionInfo;
+import me.nabdev.oxidation.util.TimingHistogram;
+
+/**
+ * A fixed size record of the most recent transitions taken by a state machine,
+ * along with when each state was last entered and how long states stay active.
+ * <p>
+ * Everything is preallocated when the state tree is compiled, so recording is
+ * O(1) and never allocates. Timestamps are in microseconds from the state
+ * machine's clock (the FPGA timestamp by default).
+ * The history is cleared whenever the state tree changes, since state and
+ * transition IDs are reassigned.
+ */
+public final class TransitionHistory {
+    private final long[] timestamps;
+    private final long[] cycles;
+    private final int[] sourceIds;
+    private final int[] targetIds;
+    private final int[] transitionIds;
+    private int next = 0;
+    private int size = 0;
+    private final LongSupplier clock;
+
+    private State[] states = new State[0];
+    private TransitionInfo[] transitions = new TransitionInfo[0];
+    private long[] enteredAt = new long[0];
+    private long[] lastDwellTimes = new long[0];
+    private TimingHistogram[] dwellTimes = new TimingHistogram[0];
+
+    TransitionHistory(int capacity, LongSupplier clock) {
+        this.clock = clock;
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Transition history capacity must be positive");
+        timestamps = new long[capacity];
+        cycles = new long[capacity];
+        sourceIds = new int[capacity];
+        targetIds = new int[capacity];
+        transitionIds = new int[capacity];
+    }
+
+    /**
+     * Clear the history and size it for a newly compiled tree.
+     *
+     * @param states      Every state, indexed by ID
+     * @param transitions Every transition, indexed by ID
+     */
+    void reset(State[] states, TransitionInfo[] transitions) {
+        this.states = states;
+        this.transitions = transitions;
+        next = 0;
+        size = 0;
+        enteredAt = new long[states.length];
+        Arrays.fill(enteredAt, -1);
+        lastDwellTimes = new long[states.length];
+        dwellTimes = new TimingHistogram[states.length];
+        for (int i = 0; i < states.length; i++) {
+            dwellTimes[i] = new TimingHistogram();
+        }
+    }
+
+    void recordTransition(long time, long cycle, int sourceId, int targetId, int transitionId) {
+        timestamps[next] = time;
+        cycles[next] = cycle;
+        sourceIds[next] = sourceId;
+        targetIds[next] = targetId;
+        transitionIds[next] = transitionId;
+        next = (next + 1) % timestamps.length;
+        if (size < timestamps.length)
+            size++;
+    }
+
+    void recordEnter(State state, long time) {
+        if (isTracked(state))
+            enteredAt[state.id] = time;
+    }
+
+    void recordExit(State state, long time) {
+        if (!isTracked(state))
+            return;
+        long entered = enteredAt[state.id];
+        if (entered < 0)
+            return;
+        lastDwellTimes[state.id] = time - entered;
+        dwellTimes[state.id].record((time - entered) * 1000);
+    }
+
+    /**
+     * Get the number of transitions currently held.
+     *
+     * @return The number of transitions, at most {@link #getCapacity()}
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the maximum number of transitions held before the oldest are
+     * overwritten.
+     *
+     * @return The capacity of the history
+     */
+    public int getCapacity() {
+        return timestamps.length;
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Transition " + index + " is not in the history (size " + size + ")");
+        return (next - 1 - index + timestamps.length) % timestamps.length;
+    }
+
+    /**
+     * Get when a transition was taken.
+     *
+     * @param index How many transitions ago (0 is the most recent)
+     * @return The timestamp in microseconds
+     */
+    public long getTimestamp(int index) {
+        return timestamps[slot(index)];
+    }
+
+    /**
+     * Get the state machine cycle a transition was taken in.
+     *
+     * @param index How many transitions ago (0 is the most recent)
+     * @return The cycle number
+     */
+    public long getCycle(int index) {
+        return cycles[slot(index)];
+    }
+
+    /**
+     * Get the ID of a transition that was taken. This is the same ID used by the
+     * binary telemetry.
+     *
+     * @param index How many transitions ago (0 is the most recent)
+     * @return The transition ID
+     */
+    public int getTransitionId(int index) {
+        return transitionIds[slot(index)];
+    }
+
+    /**
+     * Get the ID of the state that was active when a transition was taken. This
+     * is the leaf state (or the parent being entered), not necessarily the state
+     * that owns the transition.
+     *
+     * @param index How many transitions ago (0 is the most recent)
+     * @return The source state ID
+     */
+    public int getSourceId(int index) {
+        return sourceIds[slot(index)];
+    }
+
+    /**
+     * Get the ID of the state a transition was taken to.
+     *
+     * @param index How many transitions ago (0 is the most recent)
+     * @return The target state ID
+     */
+    public int getTargetId(int index) {
+        return targetIds[slot(index)];
+    }
+
+    /**
+     * Get a transition that was taken.
+     *
+     * @param index How many transitions ago (0 is the most recent)
+     * @return The transition
+     */
+    public TransitionInfo getTransition(int index) {
+        return transitions[getTransitionId(index)];
+    }
+
+    /**
+     * Get a state by its ID.
+     *
+     * @param id The state ID
+     * @return The state
+     */
+    public State getState(int id) {
+        return states[id];
+    }
+
+    /**
+     * Get when a state was last entered.
+     *
+     * @param state The state
+     * @return The timestamp in microseconds, or -1 if it has not been entered
+     */
+    public long getLastEnteredTime(State state) {
+        return isTracked(state) ? enteredAt[state.id] : -1;
+    }
+
+    /**
+     * Get how long ago a state was last entered.
+     *
+     * @param state The state
+     * @return The time since the state was entered in seconds, or
+     *         {@link Double#POSITIVE_INFINITY} if it has not been entered
+     */
+    public double getTimeSinceEntered(State state) {
+        long entered = getLastEnteredTime(state);
+        if (entered < 0)
+            return Double.POSITIVE_INFINITY;
+        return (clock.getAsLong() - entered) / 1e6;
+    }
+
+    /**
+     * Get how long a state stayed active the last time it was exited.
+     *
+     * @param state The state
+     * @return The dwell time in seconds, or 0 if the state has not been exited
+     */
+    public double getLastDwellTime(State state) {
+        return isTracked(state) ? lastDwellTimes[state.id] / 1e6 : 0;
+    }
+
+    /**
+     * Get the distribution of how long a state stayed active each time it was
+     * exited.
+     *
+     * @param state The state
+     * @return A histogram of dwell times in nanoseconds, or null if the state is
+     *         not part of the compiled tree
+     */
+    public TimingHistogram getDwellHistogram(State state) {
+        return isTracked(state) ? dwellTimes[state.id] : null;
+    }
+
+    private boolean isTracked(State state) {
+        return state.id >= 0 && state.id < states.length && states[state.id] == state;
+    }
+}
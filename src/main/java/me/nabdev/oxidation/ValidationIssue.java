@@ -0,0 +1,26 @@
+package me.nabdev.oxidation;
+
+/**
+ * A problem with the structure of a state machine, found by
+ * {@link StateMachineBase#validate()}.
+ * 
+ * @param severity How serious the problem is
+ * @param state    The state the problem was found at
+ * @param message  A description of the problem
+ */
+public record ValidationIssue(Severity severity, State state, String message) {
+    /**
+     * How serious a validation issue is.
+     */
+    public enum Severity {
+        /** The state machine will fail or misbehave when this is reached */
+        ERROR,
+        /** The state machine may misbehave, or be slower than it needs to be */
+        WARNING
+    }
+
+    @Override
+    public String toString() {
+        return severity + " at " + state.getDeepName() + ": " + message;
+    }
+}
@@ -0,0 +1,86 @@
+package me.nabdev.oxidation.sim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import me.nabdev.oxidation.util.SchedulerAdapter;
+
+/**
+ * A minimal command scheduler that runs without HAL or WPILib's
+ * CommandScheduler singleton. Commands are initialized when scheduled, executed
+ * on every {@link #run()}, and ended when they finish or are cancelled.
+ * Requirements are not checked, so commands sharing a subsystem are not
+ * interrupted by each other.
+ */
+public final class SimScheduler implements SchedulerAdapter {
+    private final List<Command> m_scheduled = new ArrayList<>();
+    private final Set<Command> m_scheduledSet = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long m_scheduleCount;
+
+    @Override
+    public void schedule(Command command) {
+        if (!m_scheduledSet.add(command))
+            return;
+        m_scheduled.add(command);
+        m_scheduleCount++;
+        command.initialize();
+    }
+
+    @Override
+    public void cancel(Command command) {
+        if (!m_scheduledSet.remove(command))
+            return;
+        m_scheduled.remove(command);
+        command.end(true);
+    }
+
+    @Override
+    public boolean isScheduled(Command command) {
+        return m_scheduledSet.contains(command);
+    }
+
+    /**
+     * Execute every scheduled command once, ending those that finish.
+     */
+    public void run() {
+        for (int i = 0; i < m_scheduled.size(); i++) {
+            Command command = m_scheduled.get(i);
+            command.execute();
+            if (command.isFinished() && m_scheduledSet.remove(command)) {
+                m_scheduled.remove(i--);
+                command.end(false);
+            }
+        }
+    }
+
+    /**
+     * Cancel every scheduled command.
+     */
+    public void cancelAll() {
+        while (!m_scheduled.isEmpty()) {
+            cancel(m_scheduled.get(m_scheduled.size() - 1));
+        }
+    }
+
+    /**
+     * Get the number of commands that are currently scheduled.
+     *
+     * @return the number of scheduled commands
+     */
+    public int getScheduledCount() {
+        return m_scheduled.size();
+    }
+
+    /**
+     * Get the total number of times a command has been scheduled.
+     *
+     * @return the number of times a command was scheduled
+     */
+    public long getScheduleCount() {
+        return m_scheduleCount;
+    }
+}
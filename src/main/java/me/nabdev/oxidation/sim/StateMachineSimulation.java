@@ -0,0 +1,200 @@
+package me.nabdev.oxidation.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import me.nabdev.oxidation.RobotMode;
+import me.nabdev.oxidation.StateMachineBase;
+
+/**
+ * Runs a state machine headless and as fast as possible, for tests and
+ * simulation. The state machine's clock, robot mode, and command scheduler are
+ * replaced with simulated ones, and telemetry and startup validation are turned
+ * off.
+ * <p>
+ * Inputs are scripted with {@link #at(double, Runnable)}, which runs an action
+ * once the simulated time reaches a given point:
+ * 
+ * <pre>
+ * StateMachineSimulation sim = new StateMachineSimulation(new MyStateMachine());
+ * sim.atMode(0.5, RobotMode.AUTONOMOUS)
+ *         .at(3.0, () -> hasGamePiece = true)
+ *         .atMode(15.0, RobotMode.TELEOP);
+ * sim.start();
+ * sim.run(20.0);
+ * </pre>
+ */
+public final class StateMachineSimulation {
+    private record TimelineEvent(long time, Runnable action) {
+    }
+
+    private final StateMachineBase m_machine;
+    private final SimScheduler m_scheduler = new SimScheduler();
+    private final long m_periodMicros;
+    private final List<TimelineEvent> m_timeline = new ArrayList<>();
+    private int m_nextEvent;
+    private long m_time;
+    private long m_cycles;
+    private RobotMode m_mode = RobotMode.DISABLED;
+
+    /**
+     * Simulate a state machine with the standard 20ms loop period.
+     *
+     * @param machine the state machine to simulate, with its initial state set
+     */
+    public StateMachineSimulation(StateMachineBase machine) {
+        this(machine, 0.02);
+    }
+
+    /**
+     * Simulate a state machine.
+     *
+     * @param machine       the state machine to simulate, with its initial state
+     *                      set
+     * @param periodSeconds the simulated time between cycles
+     */
+    public StateMachineSimulation(StateMachineBase machine, double periodSeconds) {
+        if (periodSeconds <= 0)
+            throw new IllegalArgumentException("The simulation period must be positive");
+        m_machine = machine;
+        m_periodMicros = Math.round(periodSeconds * 1e6);
+        machine.setClock(() -> m_time);
+        machine.setModeSource(() -> m_mode);
+        machine.setScheduler(m_scheduler);
+        machine.setTelemetryFormat(StateMachineBase.TelemetryFormat.NONE);
+        // Reporting needs the driver station, call validate() directly instead
+        machine.setValidateOnStartup(false);
+    }
+
+    /**
+     * Run an action once the simulated time reaches the given time. Actions due
+     * at the same time run in the order they were added.
+     *
+     * @param seconds the simulated time to run the action at
+     * @param action  the action to run
+     * @return this simulation
+     */
+    public StateMachineSimulation at(double seconds, Runnable action) {
+        TimelineEvent event = new TimelineEvent(Math.round(seconds * 1e6), action);
+        int index = m_timeline.size();
+        while (index > m_nextEvent && m_timeline.get(index - 1).time() > event.time()) {
+            index--;
+        }
+        m_timeline.add(index, event);
+        return this;
+    }
+
+    /**
+     * Change the robot mode once the simulated time reaches the given time.
+     *
+     * @param seconds the simulated time to change modes at
+     * @param mode    the mode to change to
+     * @return this simulation
+     */
+    public StateMachineSimulation atMode(double seconds, RobotMode mode) {
+        return at(seconds, () -> m_mode = mode);
+    }
+
+    /**
+     * Set the simulated robot mode immediately.
+     *
+     * @param mode the robot mode
+     */
+    public void setMode(RobotMode mode) {
+        m_mode = mode;
+    }
+
+    /**
+     * Get the simulated robot mode.
+     *
+     * @return the robot mode
+     */
+    public RobotMode getMode() {
+        return m_mode;
+    }
+
+    /**
+     * Start the state machine, running any actions scheduled for time 0 first.
+     */
+    public void start() {
+        runDueEvents();
+        m_machine.onStartup();
+    }
+
+    /**
+     * Run one cycle: run the actions that are due, run the state machine and the
+     * scheduled commands, then advance the simulated time by one period.
+     */
+    public void step() {
+        runDueEvents();
+        m_machine.periodic();
+        m_scheduler.run();
+        m_time += m_periodMicros;
+        m_cycles++;
+    }
+
+    /**
+     * Run cycles until the given amount of simulated time has passed.
+     *
+     * @param seconds the simulated time to run for
+     */
+    public void run(double seconds) {
+        long end = m_time + Math.round(seconds * 1e6);
+        while (m_time < end) {
+            step();
+        }
+    }
+
+    /**
+     * Run a fixed number of cycles.
+     *
+     * @param cycles the number of cycles to run
+     */
+    public void runCycles(long cycles) {
+        for (long i = 0; i < cycles; i++) {
+            step();
+        }
+    }
+
+    private void runDueEvents() {
+        while (m_nextEvent < m_timeline.size() && m_timeline.get(m_nextEvent).time() <= m_time) {
+            m_timeline.get(m_nextEvent++).action().run();
+        }
+    }
+
+    /**
+     * Get the simulated time.
+     *
+     * @return the simulated time in seconds
+     */
+    public double getTime() {
+        return m_time / 1e6;
+    }
+
+    /**
+     * Get the number of cycles run.
+     *
+     * @return the number of cycles
+     */
+    public long getCycles() {
+        return m_cycles;
+    }
+
+    /**
+     * Get the simulated scheduler that the state machine's commands run on.
+     *
+     * @return the scheduler
+     */
+    public SimScheduler getScheduler() {
+        return m_scheduler;
+    }
+
+    /**
+     * Get the state machine being simulated.
+     *
+     * @return the state machine
+     */
+    public StateMachineBase getStateMachine() {
+        return m_machine;
+    }
+}
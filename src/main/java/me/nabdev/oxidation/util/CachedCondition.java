@@ -0,0 +1,60 @@
+package me.nabdev.oxidation.util;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * A condition that is sampled at most once per {@link ConditionCache} cycle.
+ * Every read within the same cycle returns the same value, so transitions and
+ * triggers sharing a condition see the same snapshot.
+ */
+public final class CachedCondition implements BooleanSupplier {
+    private final BooleanSupplier m_condition;
+    private final ConditionCache m_cache;
+    private final int m_id;
+    private long m_sampledCycle = -1;
+    private boolean m_value;
+
+    CachedCondition(BooleanSupplier condition, ConditionCache cache, int id) {
+        m_condition = condition;
+        m_cache = cache;
+        m_id = id;
+    }
+
+    @Override
+    public boolean getAsBoolean() {
+        long cycle = m_cache.getCycle();
+        if (m_sampledCycle != cycle) {
+            m_value = m_cache.sample(this, m_value);
+            m_sampledCycle = cycle;
+        }
+        return m_value;
+    }
+
+    /**
+     * Get the condition that this wraps.
+     * 
+     * @return the uncached condition
+     */
+    public BooleanSupplier getCondition() {
+        return m_condition;
+    }
+
+    /**
+     * Get the ID of this condition within its cache. IDs are assigned in the order
+     * conditions are first cached.
+     * 
+     * @return the condition ID
+     */
+    public int getId() {
+        return m_id;
+    }
+
+    /**
+     * Get the cache this condition belongs to.
+     * 
+     * @return the cache whose cycle counter this condition follows
+     */
+    public ConditionCache getCache() {
+        return m_cache;
+    }
+}
@@ -0,0 +1,123 @@
+package me.nabdev.oxidation.util;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Hands out {@link CachedCondition}s that share a cycle counter, so that each
+ * distinct condition is sampled at most once per cycle no matter how many
+ * transitions and triggers use it.
+ * <p>
+ * Conditions are matched by identity, so the same {@link BooleanSupplier}
+ * instance must be passed in for two users to share a sample.
+ * <p>
+ * Because every sample goes through the cache, it can also record them into a
+ * {@link ConditionRecording}, or replay a recording instead of sampling the
+ * real conditions.
+ */
+public final class ConditionCache {
+    private final Map<BooleanSupplier, CachedCondition> m_conditions = new IdentityHashMap<>();
+    private long m_cycle;
+    private int m_nextId;
+
+    private ConditionRecording m_recording;
+    private ConditionRecording m_replay;
+    private long m_replayStartCycle;
+
+    /**
+     * Get the cached version of a condition, creating it if this condition has not
+     * been seen before.
+     * 
+     * @param condition the condition to cache
+     * @return a condition that samples the given condition at most once per cycle
+     */
+    public CachedCondition get(BooleanSupplier condition) {
+        if (condition instanceof CachedCondition cached && cached.getCache() == this)
+            return cached;
+        return m_conditions.computeIfAbsent(condition, c -> new CachedCondition(c, this, m_nextId++));
+    }
+
+    /**
+     * Start a new cycle. Every cached condition will be sampled again the next
+     * time it is read.
+     */
+    public void advance() {
+        if (m_recording != null)
+            m_recording.endFrame();
+        m_cycle++;
+    }
+
+    /**
+     * Start recording every condition sample into the given recording. Samples
+     * taken before the next {@link #advance()} go into the recording's first
+     * frame. Stopping (or switching) recordings completes the frame in progress.
+     * 
+     * @param recording the recording to add to, or null to stop recording
+     */
+    public void setRecording(ConditionRecording recording) {
+        if (m_recording != null)
+            m_recording.endFrame();
+        m_recording = recording;
+    }
+
+    /**
+     * Get the recording that samples are currently recorded into.
+     * 
+     * @return the recording, or null if not recording
+     */
+    public ConditionRecording getRecording() {
+        return m_recording;
+    }
+
+    /**
+     * Start replaying a recording. Until replay is stopped, conditions return
+     * their recorded values instead of being sampled, starting from the
+     * recording's first frame. A condition that was not sampled in a frame keeps
+     * its previous value.
+     * 
+     * @param recording the recording to replay, or null to go back to sampling the
+     *                  real conditions
+     */
+    public void setReplay(ConditionRecording recording) {
+        m_replay = recording;
+        m_replayStartCycle = m_cycle;
+    }
+
+    /**
+     * Check whether a recording is being replayed.
+     * 
+     * @return true if conditions return recorded values
+     */
+    public boolean isReplaying() {
+        return m_replay != null;
+    }
+
+    /**
+     * Get the frame of the recording being replayed that the current cycle
+     * corresponds to.
+     * 
+     * @return the replay frame, or -1 if nothing is being replayed
+     */
+    public int getReplayFrame() {
+        return m_replay != null ? (int) (m_cycle - m_replayStartCycle) : -1;
+    }
+
+    boolean sample(CachedCondition condition, boolean previous) {
+        if (m_replay != null)
+            return m_replay.getValue(getReplayFrame(), condition.getId(), previous);
+        boolean value = condition.getCondition().getAsBoolean();
+        if (m_recording != null)
+            m_recording.record(condition.getId(), value);
+        return value;
+    }
+
+    /**
+     * Get the current cycle number.
+     * 
+     * @return the number of times {@link #advance()} has been called
+     */
+    public long getCycle() {
+        return m_cycle;
+    }
+}
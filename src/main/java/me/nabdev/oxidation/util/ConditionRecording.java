@@ -0,0 +1,203 @@
+package me.nabdev.oxidation.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A recording of every condition value sampled through a
+ * {@link ConditionCache}, grouped into frames (one per cache cycle). Each frame
+ * can also hold a checkpoint, such as the ID of the state the state machine
+ * settled on, to check a replay against.
+ * <p>
+ * Conditions are identified by the order they were first passed to the cache,
+ * so a replay must construct its conditions in the same order as the recording
+ * did (normally by running the same state machine code).
+ * <p>
+ * Each frame is stored densely, indexed by condition ID: a pair of 64-bit words
+ * (which conditions were sampled, and their values) for every 64 IDs up to the
+ * highest ID sampled in that frame. Looking up a value during a replay is
+ * therefore a constant time bit test rather than a search through the frame.
+ */
+public final class ConditionRecording {
+    private static final int MAGIC = 0x4F584352;
+    private static final int VERSION = 2;
+
+    // Every frame's words, one after the other. For each block of 64 condition
+    // IDs, a mask of the conditions sampled followed by their values
+    private long[] m_words = new long[256];
+    private int m_wordCount;
+    // The end of each frame's words, and its checkpoint
+    private int[] m_frameEnds = new int[64];
+    private int[] m_checkpoints = new int[64];
+    // Frames before this one are complete
+    private int m_frameCount;
+    private int m_sampleCount;
+    private int m_completeSampleCount;
+
+    /** Create an empty recording. */
+    public ConditionRecording() {
+    }
+
+    void record(int conditionId, boolean value) {
+        int index = frameStart(m_frameCount) + ((conditionId >> 6) << 1);
+        if (index + 2 > m_wordCount) {
+            if (index + 2 > m_words.length)
+                m_words = Arrays.copyOf(m_words, Math.max(m_words.length * 2, index + 2));
+            m_wordCount = index + 2;
+        }
+        long bit = 1L << conditionId;
+        // Only the first sample in a frame counts, which is all a cache takes
+        if ((m_words[index] & bit) != 0)
+            return;
+        m_words[index] |= bit;
+        if (value)
+            m_words[index + 1] |= bit;
+        m_sampleCount++;
+    }
+
+    void endFrame() {
+        if (m_frameCount == m_frameEnds.length) {
+            m_frameEnds = Arrays.copyOf(m_frameEnds, m_frameCount * 2);
+            m_checkpoints = Arrays.copyOf(m_checkpoints, m_frameCount * 2);
+        }
+        m_frameEnds[m_frameCount++] = m_wordCount;
+        m_completeSampleCount = m_sampleCount;
+    }
+
+    private int frameStart(int frame) {
+        return frame == 0 ? 0 : m_frameEnds[frame - 1];
+    }
+
+    /**
+     * Look up a condition's recorded value in a frame.
+     *
+     * @param frame       the frame to look in
+     * @param conditionId the ID of the condition
+     * @param fallback    the value to return if the condition was not sampled in
+     *                    that frame
+     * @return the recorded value, or the fallback
+     */
+    boolean getValue(int frame, int conditionId, boolean fallback) {
+        if (frame < 0 || frame >= m_frameCount)
+            return fallback;
+        int index = frameStart(frame) + ((conditionId >> 6) << 1);
+        long bit = 1L << conditionId;
+        if (index >= m_frameEnds[frame] || (m_words[index] & bit) == 0)
+            return fallback;
+        return (m_words[index + 1] & bit) != 0;
+    }
+
+    /**
+     * Set the checkpoint for the frame currently being recorded.
+     *
+     * @param checkpoint the checkpoint value
+     */
+    public void setCheckpoint(int checkpoint) {
+        if (m_frameCount == m_checkpoints.length) {
+            m_frameEnds = Arrays.copyOf(m_frameEnds, m_frameCount * 2);
+            m_checkpoints = Arrays.copyOf(m_checkpoints, m_frameCount * 2);
+        }
+        m_checkpoints[m_frameCount] = checkpoint;
+    }
+
+    /**
+     * Get the checkpoint recorded for a frame.
+     *
+     * @param frame the frame
+     * @return the checkpoint value, or 0 if none was set
+     */
+    public int getCheckpoint(int frame) {
+        if (frame < 0 || frame >= m_frameCount)
+            throw new IndexOutOfBoundsException("Frame " + frame + " is not in the recording");
+        return m_checkpoints[frame];
+    }
+
+    /**
+     * Get the number of complete frames in the recording.
+     *
+     * @return the number of frames
+     */
+    public int getFrameCount() {
+        return m_frameCount;
+    }
+
+    /**
+     * Get the total number of condition samples in the recording.
+     *
+     * @return the number of samples
+     */
+    public int getSampleCount() {
+        return m_completeSampleCount;
+    }
+
+    /**
+     * Write the complete frames of this recording to a stream.
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing fails
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(m_frameCount);
+        int start = 0;
+        for (int frame = 0; frame < m_frameCount; frame++) {
+            int end = m_frameEnds[frame];
+            data.writeInt(m_checkpoints[frame]);
+            data.writeInt(end - start);
+            for (int i = start; i < end; i++) {
+                data.writeLong(m_words[i]);
+            }
+            start = end;
+        }
+        data.flush();
+    }
+
+    /**
+     * Read a recording written by {@link #write(OutputStream)}.
+     *
+     * @param in the stream to read from
+     * @return the recording
+     * @throws IOException if reading fails or the stream is not a recording
+     */
+    public static ConditionRecording read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC)
+            throw new IOException("Not a condition recording");
+        int version = data.readInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported condition recording version " + version);
+
+        ConditionRecording recording = new ConditionRecording();
+        int frameCount = data.readInt();
+        for (int frame = 0; frame < frameCount; frame++) {
+            recording.setCheckpoint(data.readInt());
+            recording.readWords(data);
+            recording.endFrame();
+        }
+        return recording;
+    }
+
+    private void readWords(DataInputStream data) throws IOException {
+        int wordCount = data.readInt();
+        if (wordCount < 0 || wordCount % 2 != 0)
+            throw new IOException("Invalid condition recording frame of " + wordCount + " words");
+        int start = m_wordCount;
+        if (start + wordCount > m_words.length)
+            m_words = Arrays.copyOf(m_words, Math.max(m_words.length * 2, start + wordCount));
+        for (int i = 0; i < wordCount; i++) {
+            m_words[start + i] = data.readLong();
+        }
+        for (int i = 0; i < wordCount; i += 2) {
+            // Values are only meaningful for conditions that were sampled
+            m_words[start + i + 1] &= m_words[start + i];
+            m_sampleCount += Long.bitCount(m_words[start + i]);
+        }
+        m_wordCount = start + wordCount;
+    }
+}
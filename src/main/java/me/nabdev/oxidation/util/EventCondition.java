@@ -0,0 +1,52 @@
+package me.nabdev.oxidation.util;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * A condition that declares what it depends on. It is only sampled again after
+ * one of its {@link Signal}s has been raised, and otherwise returns the value
+ * from the last sample.
+ * <p>
+ * When every transition that applies to a state is an event condition, the
+ * state machine skips evaluating that state's transitions entirely on cycles
+ * where no signal was raised.
+ */
+public final class EventCondition implements BooleanSupplier {
+    private final BooleanSupplier m_condition;
+    private final Signal[] m_dependencies;
+    private long m_sampledVersion = -1;
+    private boolean m_value;
+
+    private EventCondition(BooleanSupplier condition, Signal[] dependencies) {
+        m_condition = condition;
+        m_dependencies = dependencies;
+    }
+
+    /**
+     * Create a condition that is only sampled after one of its dependencies is
+     * raised.
+     * 
+     * @param condition    the condition to sample
+     * @param dependencies the signals that are raised whenever the condition might
+     *                     have changed
+     * @return the event condition
+     */
+    public static EventCondition of(BooleanSupplier condition, Signal... dependencies) {
+        if (dependencies.length == 0)
+            throw new IllegalArgumentException("An event condition needs at least one signal to depend on");
+        return new EventCondition(condition, dependencies.clone());
+    }
+
+    @Override
+    public boolean getAsBoolean() {
+        long version = 0;
+        for (Signal dependency : m_dependencies) {
+            version = Math.max(version, dependency.getVersion());
+        }
+        if (version != m_sampledVersion) {
+            m_value = m_condition.getAsBoolean();
+            m_sampledVersion = version;
+        }
+        return m_value;
+    }
+}
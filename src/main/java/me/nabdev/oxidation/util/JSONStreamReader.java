@@ -0,0 +1,588 @@
+package me.nabdev.oxidation.util;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a JSON document one token at a time, straight out of a
+ * {@link ByteBuffer} (normally a memory-mapped file), without building a tree
+ * of {@link org.json.JSONObject}s first.
+ * <p>
+ * Values are read in document order: {@link #beginObject()} and
+ * {@link #nextName()} step into an object, {@link #nextDouble()} and friends
+ * read a value, and {@link #skipValue()} skips one that is not needed. Numbers
+ * are parsed directly from the buffer, so reading them does not allocate.
+ * <p>
+ * Malformed JSON, or a value of a different type than the one asked for,
+ * throws an {@link IOException} with the byte offset of the problem.
+ */
+public final class JSONStreamReader {
+    /** The kinds of token in a JSON document. */
+    public enum Token {
+        /** The start of an object */
+        BEGIN_OBJECT,
+        /** The end of an object */
+        END_OBJECT,
+        /** The start of an array */
+        BEGIN_ARRAY,
+        /** The end of an array */
+        END_ARRAY,
+        /** The name of an object member */
+        NAME,
+        /** A string value */
+        STRING,
+        /** A number value */
+        NUMBER,
+        /** true or false */
+        BOOLEAN,
+        /** null */
+        NULL,
+        /** The end of the document */
+        END_DOCUMENT
+    }
+
+    // What the reader is in the middle of, kept as a stack
+    private static final byte EMPTY_DOCUMENT = 0;
+    private static final byte NONEMPTY_DOCUMENT = 1;
+    private static final byte EMPTY_ARRAY = 2;
+    private static final byte NONEMPTY_ARRAY = 3;
+    private static final byte EMPTY_OBJECT = 4;
+    private static final byte NONEMPTY_OBJECT = 5;
+    private static final byte DANGLING_NAME = 6;
+
+    // Powers of ten that are exact as doubles, for the fast number path
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final ByteBuffer m_buffer;
+    private final int m_limit;
+    private int m_pos;
+    private Token m_peeked;
+
+    private byte[] m_stack = new byte[16];
+    private int m_depth;
+
+    // The last number parsed, as significant digits and a power of ten
+    private long m_mantissa;
+    private int m_digits;
+    private int m_exponent;
+    private boolean m_negative;
+    private boolean m_exact;
+    private int m_numberStart;
+
+    /**
+     * Create a reader over the remaining bytes of a buffer, which must hold UTF-8
+     * JSON.
+     *
+     * @param buffer the buffer to read
+     */
+    public JSONStreamReader(ByteBuffer buffer) {
+        m_buffer = buffer;
+        m_pos = buffer.position();
+        m_limit = buffer.limit();
+        m_stack[m_depth++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Create a reader over a file, mapping it into memory rather than copying it.
+     *
+     * @param file the file to read
+     * @return the reader
+     * @throws IOException if the file can not be opened
+     */
+    public static JSONStreamReader open(Path file) throws IOException {
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new JSONStreamReader(buffer);
+        }
+    }
+
+    /**
+     * Get the kind of the next token without consuming it.
+     *
+     * @return the next token
+     * @throws IOException if the JSON is malformed
+     */
+    public Token peek() throws IOException {
+        if (m_peeked != null)
+            return m_peeked;
+
+        int c;
+        switch (m_stack[m_depth - 1]) {
+            case EMPTY_ARRAY -> {
+                m_stack[m_depth - 1] = NONEMPTY_ARRAY;
+                if (nextNonWhitespace() == ']')
+                    return m_peeked = Token.END_ARRAY;
+            }
+            case NONEMPTY_ARRAY -> {
+                c = nextNonWhitespace();
+                if (c == ']')
+                    return m_peeked = Token.END_ARRAY;
+                if (c != ',')
+                    throw syntaxError("Expected ',' or ']'");
+                m_pos++;
+            }
+            case EMPTY_OBJECT, NONEMPTY_OBJECT -> {
+                c = nextNonWhitespace();
+                if (c == '}')
+                    return m_peeked = Token.END_OBJECT;
+                if (m_stack[m_depth - 1] == NONEMPTY_OBJECT) {
+                    if (c != ',')
+                        throw syntaxError("Expected ',' or '}'");
+                    m_pos++;
+                    c = nextNonWhitespace();
+                }
+                if (c != '"')
+                    throw syntaxError("Expected a name");
+                m_stack[m_depth - 1] = DANGLING_NAME;
+                return m_peeked = Token.NAME;
+            }
+            case DANGLING_NAME -> {
+                m_stack[m_depth - 1] = NONEMPTY_OBJECT;
+                if (nextNonWhitespace() != ':')
+                    throw syntaxError("Expected ':'");
+                m_pos++;
+            }
+            case EMPTY_DOCUMENT -> m_stack[m_depth - 1] = NONEMPTY_DOCUMENT;
+            default -> {
+                if (nextNonWhitespace() == -1)
+                    return m_peeked = Token.END_DOCUMENT;
+                throw syntaxError("Expected the end of the document");
+            }
+        }
+
+        c = nextNonWhitespace();
+        return m_peeked = switch (c) {
+            case '{' -> Token.BEGIN_OBJECT;
+            case '[' -> Token.BEGIN_ARRAY;
+            case '"' -> Token.STRING;
+            case 't', 'f' -> Token.BOOLEAN;
+            case 'n' -> Token.NULL;
+            case '-', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' -> Token.NUMBER;
+            case -1 -> throw syntaxError("Unexpected end of document");
+            default -> throw syntaxError("Unexpected character '" + (char) c + "'");
+        };
+    }
+
+    /**
+     * Check whether the current object or array has another member.
+     *
+     * @return false if the next token ends the current object or array
+     * @throws IOException if the JSON is malformed
+     */
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    /**
+     * Consume the start of an object.
+     *
+     * @throws IOException if the next token is not the start of an object
+     */
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        m_pos++;
+        push(EMPTY_OBJECT);
+    }
+
+    /**
+     * Consume the end of an object.
+     *
+     * @throws IOException if the next token is not the end of an object
+     */
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        m_pos++;
+        m_depth--;
+    }
+
+    /**
+     * Consume the start of an array.
+     *
+     * @throws IOException if the next token is not the start of an array
+     */
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        m_pos++;
+        push(EMPTY_ARRAY);
+    }
+
+    /**
+     * Consume the end of an array.
+     *
+     * @throws IOException if the next token is not the end of an array
+     */
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        m_pos++;
+        m_depth--;
+    }
+
+    /**
+     * Read the name of the next object member.
+     *
+     * @return the name
+     * @throws IOException if the next token is not a name
+     */
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return readString();
+    }
+
+    /**
+     * Read a string value.
+     *
+     * @return the string
+     * @throws IOException if the next token is not a string
+     */
+    public String nextString() throws IOException {
+        expect(Token.STRING);
+        return readString();
+    }
+
+    /**
+     * Read a boolean value.
+     *
+     * @return the value
+     * @throws IOException if the next token is not a boolean
+     */
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        if (m_buffer.get(m_pos) == 't') {
+            expectLiteral("true");
+            return true;
+        }
+        expectLiteral("false");
+        return false;
+    }
+
+    /**
+     * Consume a null value.
+     *
+     * @throws IOException if the next token is not null
+     */
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+        expectLiteral("null");
+    }
+
+    /**
+     * Read a number value.
+     *
+     * @return the value
+     * @throws IOException if the next token is not a number
+     */
+    public double nextDouble() throws IOException {
+        expect(Token.NUMBER);
+        readNumber();
+        return numberAsDouble();
+    }
+
+    /**
+     * Read a number value that must be a whole number.
+     *
+     * @return the value
+     * @throws IOException if the next token is not a whole number that fits in a
+     *                     long
+     */
+    public long nextLong() throws IOException {
+        expect(Token.NUMBER);
+        int start = m_pos;
+        readNumber();
+        if (m_exact && m_exponent >= 0 && m_digits + m_exponent <= 18) {
+            long value = m_mantissa;
+            for (int i = 0; i < m_exponent; i++) {
+                value *= 10;
+            }
+            return m_negative ? -value : value;
+        }
+        // Too many digits for the mantissa, which a double can not hold exactly
+        // either, so parse the text
+        try {
+            return new BigDecimal(numberText()).longValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw syntaxError("Expected a whole number that fits in a long", start);
+        }
+    }
+
+    /**
+     * Read a number value that must be a whole number that fits in an int.
+     *
+     * @return the value
+     * @throws IOException if the next token is not a whole number that fits in an
+     *                     int
+     */
+    public int nextInt() throws IOException {
+        int start = m_pos;
+        long value = nextLong();
+        if (value != (int) value)
+            throw syntaxError("Expected a number that fits in an int", start);
+        return (int) value;
+    }
+
+    /**
+     * Skip the next value, including everything inside it if it is an object or
+     * array.
+     *
+     * @throws IOException if the JSON is malformed
+     */
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT -> {
+                    beginObject();
+                    depth++;
+                }
+                case BEGIN_ARRAY -> {
+                    beginArray();
+                    depth++;
+                }
+                case END_OBJECT -> {
+                    // Only the end of an object or array this started can be skipped
+                    if (depth == 0)
+                        throw syntaxError("Expected a value");
+                    endObject();
+                    depth--;
+                }
+                case END_ARRAY -> {
+                    // Only the end of an object or array this started can be skipped
+                    if (depth == 0)
+                        throw syntaxError("Expected a value");
+                    endArray();
+                    depth--;
+                }
+                case NAME, STRING -> skipString();
+                case NUMBER -> {
+                    m_peeked = null;
+                    readNumber();
+                }
+                case BOOLEAN -> nextBoolean();
+                case NULL -> nextNull();
+                case END_DOCUMENT -> throw syntaxError("Unexpected end of document");
+            }
+        } while (depth > 0);
+    }
+
+    /**
+     * Get the offset of the reader in the buffer, for error messages.
+     *
+     * @return the byte offset of the next character to be read
+     */
+    public int getPosition() {
+        return m_pos;
+    }
+
+    private void expect(Token token) throws IOException {
+        Token actual = peek();
+        if (actual != token)
+            throw syntaxError("Expected " + token + " but found " + actual);
+        m_peeked = null;
+    }
+
+    private void push(byte scope) {
+        if (m_depth == m_stack.length)
+            m_stack = Arrays.copyOf(m_stack, m_depth * 2);
+        m_stack[m_depth++] = scope;
+    }
+
+    private int nextNonWhitespace() {
+        while (m_pos < m_limit) {
+            byte c = m_buffer.get(m_pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+                return c;
+            m_pos++;
+        }
+        return -1;
+    }
+
+    private void expectLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (m_pos + i >= m_limit || m_buffer.get(m_pos + i) != literal.charAt(i))
+                throw syntaxError("Expected " + literal);
+        }
+        m_pos += literal.length();
+    }
+
+    private void skipString() throws IOException {
+        m_peeked = null;
+        for (int i = m_pos + 1; i < m_limit; i++) {
+            byte c = m_buffer.get(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                m_pos = i + 1;
+                return;
+            }
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    // Reads the string starting at the opening quote at m_pos
+    private String readString() throws IOException {
+        StringBuilder builder = null;
+        int start = m_pos + 1;
+        for (int i = start; i < m_limit; i++) {
+            byte c = m_buffer.get(i);
+            if (c == '"') {
+                String segment = decode(start, i);
+                m_pos = i + 1;
+                return builder == null ? segment : builder.append(segment).toString();
+            }
+            if (c != '\\')
+                continue;
+
+            if (builder == null)
+                builder = new StringBuilder();
+            builder.append(decode(start, i));
+            if (++i >= m_limit)
+                break;
+            switch (m_buffer.get(i)) {
+                case '"' -> builder.append('"');
+                case '\\' -> builder.append('\\');
+                case '/' -> builder.append('/');
+                case 'b' -> builder.append('\b');
+                case 'f' -> builder.append('\f');
+                case 'n' -> builder.append('\n');
+                case 'r' -> builder.append('\r');
+                case 't' -> builder.append('\t');
+                case 'u' -> {
+                    if (i + 4 >= m_limit)
+                        throw syntaxError("Unterminated escape sequence", i);
+                    int code = 0;
+                    for (int j = 1; j <= 4; j++) {
+                        int digit = Character.digit(m_buffer.get(i + j), 16);
+                        if (digit < 0)
+                            throw syntaxError("Invalid unicode escape", i);
+                        code = code * 16 + digit;
+                    }
+                    builder.append((char) code);
+                    i += 4;
+                }
+                default -> throw syntaxError("Invalid escape sequence", i);
+            }
+            start = i + 1;
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    private String decode(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        m_buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Parses the number at m_pos into m_mantissa and m_exponent
+    private void readNumber() throws IOException {
+        m_numberStart = m_pos;
+        m_negative = false;
+        m_mantissa = 0;
+        m_exponent = 0;
+        m_exact = true;
+        m_digits = 0;
+
+        int i = m_pos;
+        if (i < m_limit && m_buffer.get(i) == '-') {
+            m_negative = true;
+            i++;
+        }
+
+        int integerStart = i;
+        // JSON does not allow leading zeros, such as 01
+        if (i + 1 < m_limit && m_buffer.get(i) == '0' && m_buffer.get(i + 1) >= '0'
+                && m_buffer.get(i + 1) <= '9')
+            throw syntaxError("Unexpected leading zero", i);
+        boolean fraction = false;
+        for (; i < m_limit; i++) {
+            byte c = m_buffer.get(i);
+            if (c == '.' && !fraction) {
+                if (i == integerStart)
+                    throw syntaxError("Expected a digit", i);
+                fraction = true;
+                continue;
+            }
+            if (c < '0' || c > '9')
+                break;
+            int digit = c - '0';
+            if (m_mantissa == 0 && digit == 0) {
+                // Leading zeros are not significant
+                if (fraction)
+                    m_exponent--;
+            } else if (m_digits < 18) {
+                m_mantissa = m_mantissa * 10 + digit;
+                m_digits++;
+                if (fraction)
+                    m_exponent--;
+            } else {
+                // Past what a long can hold, the remaining digits only scale the value
+                m_exact = false;
+                if (!fraction)
+                    m_exponent++;
+            }
+        }
+        if (i == integerStart || m_buffer.get(i - 1) == '.')
+            throw syntaxError("Expected a digit", i);
+
+        if (i < m_limit && (m_buffer.get(i) == 'e' || m_buffer.get(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < m_limit && (m_buffer.get(i) == '+' || m_buffer.get(i) == '-')) {
+                negativeExponent = m_buffer.get(i) == '-';
+                i++;
+            }
+            int exponentStart = i;
+            int exponent = 0;
+            for (; i < m_limit; i++) {
+                byte c = m_buffer.get(i);
+                if (c < '0' || c > '9')
+                    break;
+                if (exponent < 100000)
+                    exponent = exponent * 10 + (c - '0');
+            }
+            if (i == exponentStart)
+                throw syntaxError("Expected a digit", i);
+            m_exponent += negativeExponent ? -exponent : exponent;
+        }
+        m_pos = i;
+    }
+
+    private double numberAsDouble() {
+        // Both the digits and the power of ten are exact doubles, so a single
+        // multiply or divide is correctly rounded
+        if (m_exact && m_mantissa < (1L << 53) && m_exponent >= -22 && m_exponent <= 22) {
+            double value = m_exponent >= 0 ? m_mantissa * POWERS_OF_TEN[m_exponent]
+                    : m_mantissa / POWERS_OF_TEN[-m_exponent];
+            return m_negative ? -value : value;
+        }
+        return Double.parseDouble(numberText());
+    }
+
+    private String numberText() {
+        byte[] bytes = new byte[m_pos - m_numberStart];
+        m_buffer.get(m_numberStart, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private IOException syntaxError(String message) {
+        return syntaxError(message, m_pos);
+    }
+
+    private IOException syntaxError(String message, int position) {
+        return new IOException(message + " at byte " + position);
+    }
+}
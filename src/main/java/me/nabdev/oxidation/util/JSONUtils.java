@@ -1,5 +1,6 @@
 package me.nabdev.oxidation.util;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import edu.wpi.first.math.geometry.Pose2d;
@@ -41,8 +42,22 @@ public class JSONUtils {
     /**
      * Converts a Pose2d object to a JSONObject.
      * 
-     * @param translation the Pose2d object to convert
-     * @return JSONObject containing x, y, and rot keys
+     * @param pose the Pose2d object to convert
+     * @return JSONObject containing x, y, and rot (in degrees) keys
+     */
+    public static JSONObject fromPose2d(Pose2d pose) {
+        JSONObject obj = new JSONObject();
+        obj.put("x", pose.getX());
+        obj.put("y", pose.getY());
+        obj.put("rot", pose.getRotation().getDegrees());
+        return obj;
+    }
+
+    /**
+     * Converts a Translation2d object to a JSONObject.
+     * 
+     * @param translation the Translation2d object to convert
+     * @return JSONObject containing x and y keys
      */
     public static JSONObject fromTranslation2d(Translation2d translation) {
         JSONObject obj = new JSONObject();
@@ -64,4 +79,42 @@ public class JSONUtils {
         obj.put("y", y);
         return obj;
     }
+
+    /**
+     * Converts a JSONArray of poses to a PoseArray.
+     * 
+     * @param array the JSONArray of JSONObjects containing x, y, and optional rot
+     *              keys
+     * @return PoseArray
+     */
+    public static PoseArray getPoseArray(JSONArray array) {
+        double[] packed = new double[array.length() * 3];
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject obj = array.getJSONObject(i);
+            if (!obj.has("x") || !obj.has("y"))
+                throw new IllegalArgumentException("JSONObject does not contain x and y keys");
+            packed[i * 3] = obj.getDouble("x");
+            packed[i * 3 + 1] = obj.getDouble("y");
+            packed[i * 3 + 2] = Math.toRadians(obj.has("rot") ? obj.getDouble("rot") : 0);
+        }
+        return new PoseArray(packed);
+    }
+
+    /**
+     * Converts a PoseArray to a JSONArray.
+     * 
+     * @param poses the PoseArray to convert
+     * @return JSONArray of JSONObjects containing x, y, and rot keys
+     */
+    public static JSONArray fromPoseArray(PoseArray poses) {
+        JSONArray array = new JSONArray();
+        for (int i = 0; i < poses.size(); i++) {
+            JSONObject obj = new JSONObject();
+            obj.put("x", poses.getX(i));
+            obj.put("y", poses.getY(i));
+            obj.put("rot", Math.toDegrees(poses.getRotationRadians(i)));
+            array.put(obj);
+        }
+        return array;
+    }
 }
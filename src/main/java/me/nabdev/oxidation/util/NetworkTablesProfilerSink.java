@@ -0,0 +1,45 @@
+package me.nabdev.oxidation.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+/**
+ * A {@link ProfilerSink} that publishes each report to NetworkTables as a
+ * double array of {@code [p50, p99, max]} in microseconds.
+ */
+public final class NetworkTablesProfilerSink implements ProfilerSink {
+    private final NetworkTable m_table;
+    private final Map<String, DoubleArrayPublisher> m_publishers = new HashMap<>();
+    private final double[] m_values = new double[3];
+
+    /** Publish under the {@code StateMachine/Profiler} table. */
+    public NetworkTablesProfilerSink() {
+        this(NetworkTableInstance.getDefault().getTable("StateMachine/Profiler"));
+    }
+
+    /**
+     * Publish under the given table.
+     *
+     * @param table the table to publish to
+     */
+    public NetworkTablesProfilerSink(NetworkTable table) {
+        m_table = table;
+    }
+
+    @Override
+    public void report(String name, TimingHistogram histogram) {
+        DoubleArrayPublisher publisher = m_publishers.get(name);
+        if (publisher == null) {
+            publisher = m_table.getDoubleArrayTopic(name).publish();
+            m_publishers.put(name, publisher);
+        }
+        m_values[0] = histogram.getPercentile(0.5) / 1e3;
+        m_values[1] = histogram.getPercentile(0.99) / 1e3;
+        m_values[2] = histogram.getMax() / 1e3;
+        publisher.set(m_values);
+    }
+}
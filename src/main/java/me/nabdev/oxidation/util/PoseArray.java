@@ -0,0 +1,102 @@
+package me.nabdev.oxidation.util;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * A list of poses packed into a single {@code double[]}, so that a long list
+ * of waypoints costs one array instead of three objects per pose. Reading a
+ * coordinate does not allocate.
+ */
+public final class PoseArray {
+    private final double[] m_data;
+
+    /**
+     * Create a pose array around packed data. The array is used directly, not
+     * copied.
+     *
+     * @param packed the x, y, and rotation (in radians) of each pose in turn
+     */
+    public PoseArray(double[] packed) {
+        if (packed.length % 3 != 0)
+            throw new IllegalArgumentException(
+                    "Packed pose data must have 3 values per pose, got " + packed.length + " values");
+        m_data = packed;
+    }
+
+    /**
+     * Create a pose array from poses.
+     *
+     * @param poses the poses
+     * @return the packed poses
+     */
+    public static PoseArray of(Pose2d... poses) {
+        double[] packed = new double[poses.length * 3];
+        for (int i = 0; i < poses.length; i++) {
+            packed[i * 3] = poses[i].getX();
+            packed[i * 3 + 1] = poses[i].getY();
+            packed[i * 3 + 2] = poses[i].getRotation().getRadians();
+        }
+        return new PoseArray(packed);
+    }
+
+    /**
+     * Get the number of poses.
+     *
+     * @return the number of poses
+     */
+    public int size() {
+        return m_data.length / 3;
+    }
+
+    /**
+     * Get the x coordinate of a pose.
+     *
+     * @param index the index of the pose
+     * @return the x coordinate in meters
+     */
+    public double getX(int index) {
+        return m_data[index * 3];
+    }
+
+    /**
+     * Get the y coordinate of a pose.
+     *
+     * @param index the index of the pose
+     * @return the y coordinate in meters
+     */
+    public double getY(int index) {
+        return m_data[index * 3 + 1];
+    }
+
+    /**
+     * Get the rotation of a pose.
+     *
+     * @param index the index of the pose
+     * @return the rotation in radians
+     */
+    public double getRotationRadians(int index) {
+        return m_data[index * 3 + 2];
+    }
+
+    /**
+     * Create a {@link Pose2d} for one of the poses.
+     *
+     * @param index the index of the pose
+     * @return a new Pose2d
+     */
+    public Pose2d getPose2d(int index) {
+        return new Pose2d(getX(index), getY(index), new Rotation2d(getRotationRadians(index)));
+    }
+
+    /**
+     * Create a {@link Translation2d} for the position of one of the poses.
+     *
+     * @param index the index of the pose
+     * @return a new Translation2d
+     */
+    public Translation2d getTranslation2d(int index) {
+        return new Translation2d(getX(index), getY(index));
+    }
+}
@@ -0,0 +1,17 @@
+package me.nabdev.oxidation.util;
+
+/**
+ * Receives timing reports from a profiler. Histograms are reset after they are
+ * reported, so a sink should read what it needs before returning.
+ */
+@FunctionalInterface
+public interface ProfilerSink {
+    /**
+     * Report the timings recorded for one measured item since the last report.
+     *
+     * @param name      the name of the measured item, the same instance is passed
+     *                  every report
+     * @param histogram the recorded timings
+     */
+    void report(String name, TimingHistogram histogram);
+}
@@ -0,0 +1,52 @@
+package me.nabdev.oxidation.util;
+
+import edu.wpi.first.wpilibj2.command.Command;
+
+/**
+ * The operations the state machine needs from a command scheduler. Event loops
+ * and states go through this instead of scheduling commands directly, so that
+ * a different scheduler (such as a headless one for simulation) can be used.
+ */
+public interface SchedulerAdapter {
+    /**
+     * Schedules commands through WPILib's {@code CommandScheduler}.
+     */
+    SchedulerAdapter COMMAND_SCHEDULER = new SchedulerAdapter() {
+        @Override
+        public void schedule(Command command) {
+            command.schedule();
+        }
+
+        @Override
+        public void cancel(Command command) {
+            command.cancel();
+        }
+
+        @Override
+        public boolean isScheduled(Command command) {
+            return command.isScheduled();
+        }
+    };
+
+    /**
+     * Schedule a command, if it is not already scheduled.
+     *
+     * @param command the command to schedule
+     */
+    void schedule(Command command);
+
+    /**
+     * Cancel a command, if it is scheduled.
+     *
+     * @param command the command to cancel
+     */
+    void cancel(Command command);
+
+    /**
+     * Check whether a command is scheduled.
+     *
+     * @param command the command to check
+     * @return true if the command is scheduled
+     */
+    boolean isScheduled(Command command);
+}
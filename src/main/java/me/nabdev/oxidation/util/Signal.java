@@ -0,0 +1,161 @@
+package me.nabdev.oxidation.util;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.Topic;
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * Something that an {@link EventCondition} depends on. Raising a signal tells
+ * every condition that depends on it (and every state machine using those
+ * conditions) that it needs to be evaluated again.
+ * <p>
+ * Signals can be raised manually with {@link #signal()} from any thread, by a
+ * NetworkTables topic listener ({@link #fromTopic(Topic)}), or by watching a
+ * cheap value that is checked once per cycle ({@link #watching(IntSupplier)}).
+ */
+public final class Signal {
+    // Every signal is stamped from the same counter, so the newest stamp among a
+    // set of signals changes exactly when one of them is raised
+    private static final AtomicLong s_version = new AtomicLong();
+    // Replaced (never modified) whenever a signal is watched or unwatched, so
+    // pollWatched can read it every cycle without locking
+    private static volatile Signal[] s_watched = new Signal[0];
+    private static Signal s_driverStationMode;
+
+    private volatile long m_version;
+    private final IntSupplier m_watchedValue;
+    private int m_lastWatchedValue;
+
+    /**
+     * Create a signal that is only raised by calling {@link #signal()}.
+     */
+    public Signal() {
+        this(null);
+    }
+
+    private Signal(IntSupplier watchedValue) {
+        m_watchedValue = watchedValue;
+        m_version = s_version.incrementAndGet();
+        if (watchedValue != null)
+            m_lastWatchedValue = watchedValue.getAsInt();
+    }
+
+    /**
+     * Raise this signal, so that conditions depending on it are evaluated again
+     * next cycle. Safe to call from any thread.
+     */
+    public void signal() {
+        m_version = s_version.incrementAndGet();
+    }
+
+    /**
+     * Get the stamp of the last time this signal was raised.
+     * 
+     * @return a stamp that increases every time this signal is raised
+     */
+    public long getVersion() {
+        return m_version;
+    }
+
+    /**
+     * Get the stamp of the last time any signal was raised.
+     * 
+     * @return a stamp that increases every time any signal is raised
+     */
+    public static long getGlobalVersion() {
+        return s_version.get();
+    }
+
+    /**
+     * Create a signal that is raised whenever a value on the given NetworkTables
+     * topic changes.
+     * 
+     * @param topic the topic to listen to
+     * @return a signal raised by the topic's listener
+     */
+    public static Signal fromTopic(Topic topic) {
+        Signal signal = new Signal();
+        topic.getInstance().addListener(topic, EnumSet.of(NetworkTableEvent.Kind.kValueAll), event -> signal.signal());
+        return signal;
+    }
+
+    /**
+     * Create a signal that is raised whenever the given value changes. The value
+     * is checked once per cycle by {@link #pollWatched()}, so it should be cheap
+     * to read.
+     * 
+     * @param value the value to watch
+     * @return a signal raised when the value changes
+     */
+    public static Signal watching(IntSupplier value) {
+        Signal signal = new Signal(value);
+        synchronized (Signal.class) {
+            Signal[] watched = Arrays.copyOf(s_watched, s_watched.length + 1);
+            watched[watched.length - 1] = signal;
+            s_watched = watched;
+        }
+        return signal;
+    }
+
+    /**
+     * Stop checking the value this signal watches, so that it is only raised by
+     * calling {@link #signal()}. Does nothing if this signal is not watching a
+     * value, or has already been unwatched.
+     */
+    public void unwatch() {
+        synchronized (Signal.class) {
+            Signal[] watched = s_watched;
+            for (int i = 0; i < watched.length; i++) {
+                if (watched[i] != this)
+                    continue;
+                Signal[] remaining = new Signal[watched.length - 1];
+                System.arraycopy(watched, 0, remaining, 0, i);
+                System.arraycopy(watched, i + 1, remaining, i, remaining.length - i);
+                s_watched = remaining;
+                if (s_driverStationMode == this)
+                    s_driverStationMode = null;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the shared signal that is raised whenever the robot is enabled, disabled,
+     * or changes mode.
+     * 
+     * @return the driver station mode signal
+     */
+    public static synchronized Signal driverStationMode() {
+        if (s_driverStationMode == null)
+            s_driverStationMode = watching(Signal::driverStationModeBits);
+        return s_driverStationMode;
+    }
+
+    private static int driverStationModeBits() {
+        return (DriverStation.isEnabled() ? 1 : 0)
+                | (DriverStation.isAutonomous() ? 2 : 0)
+                | (DriverStation.isTest() ? 4 : 0)
+                | (DriverStation.isTeleop() ? 8 : 0);
+    }
+
+    /**
+     * Check every watched value and raise the signals whose values changed. Called
+     * by the state machine at the start of every cycle.
+     */
+    public static void pollWatched() {
+        Signal[] watched = s_watched;
+        for (int i = 0; i < watched.length; i++) {
+            Signal signal = watched[i];
+            int value = signal.m_watchedValue.getAsInt();
+            if (value != signal.m_lastWatchedValue) {
+                signal.m_lastWatchedValue = value;
+                signal.signal();
+            }
+        }
+    }
+}
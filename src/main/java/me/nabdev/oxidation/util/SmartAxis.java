@@ -0,0 +1,153 @@
+package me.nabdev.oxidation.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * An axis of a {@link SmartXboxController}, shaped by a deadband and a rate
+ * limit, with triggers that use hysteresis so that a noisy axis sitting near a
+ * threshold does not flicker between true and false.
+ * <p>
+ * The shaped value is updated at most once per controller snapshot, and all of
+ * its state is kept in primitive fields, so reading it does not allocate.
+ * Create one with {@link SmartXboxController#axis(int, double, double)}.
+ */
+public final class SmartAxis implements DoubleSupplier {
+    private record Band(double on, double off, boolean above) {
+    }
+
+    private final SmartXboxController m_controller;
+    private final SmartEventLoop m_loop;
+    private final int m_axis;
+    private final double m_deadband;
+    private final double m_rateLimit;
+
+    private long m_snapshot = -1;
+    private long m_lastTime = -1;
+    private double m_value;
+
+    private final Map<Band, SmartTrigger> m_triggers = new HashMap<>();
+
+    SmartAxis(SmartXboxController controller, SmartEventLoop loop, int axis, double deadband, double rateLimit) {
+        if (deadband < 0 || deadband >= 1)
+            throw new IllegalArgumentException("Deadband must be in the range [0, 1), got " + deadband);
+        if (!(rateLimit > 0))
+            throw new IllegalArgumentException("Rate limit must be positive, got " + rateLimit);
+        m_controller = controller;
+        m_loop = loop;
+        m_axis = axis;
+        m_deadband = deadband;
+        m_rateLimit = rateLimit;
+    }
+
+    private void update() {
+        double raw = m_controller.getAxis(m_axis);
+        long snapshot = m_controller.getSnapshotCount();
+        if (snapshot == m_snapshot)
+            return;
+        m_snapshot = snapshot;
+
+        double target = MathUtil.applyDeadband(raw, m_deadband);
+        if (m_rateLimit == Double.POSITIVE_INFINITY) {
+            m_value = target;
+            return;
+        }
+        long now = m_controller.now();
+        if (m_lastTime < 0) {
+            m_value = target;
+        } else {
+            double maxStep = m_rateLimit * (now - m_lastTime) / 1e6;
+            m_value += Math.max(-maxStep, Math.min(target - m_value, maxStep));
+        }
+        m_lastTime = now;
+    }
+
+    /**
+     * Get the shaped value of the axis for this cycle.
+     *
+     * @return the axis value after the deadband and rate limit are applied
+     */
+    @Override
+    public double getAsDouble() {
+        update();
+        return m_value;
+    }
+
+    /**
+     * Get the index of the axis on the controller.
+     *
+     * @return the axis index, starting at 0
+     */
+    public int getAxis() {
+        return m_axis;
+    }
+
+    /**
+     * Constructs a SmartTrigger instance that becomes true when the shaped axis
+     * value rises above {@code on}, and only becomes false again once it falls
+     * below {@code off}. Calling this again with the same thresholds returns the
+     * same trigger.
+     *
+     * @param on  the value above which the trigger turns on
+     * @param off the value below which the trigger turns off, no greater than
+     *            {@code on}
+     * @return a SmartTrigger instance with the given hysteresis band
+     */
+    public SmartTrigger above(double on, double off) {
+        if (off > on)
+            throw new IllegalArgumentException("The off threshold (" + off + ") must not be above the on threshold ("
+                    + on + ")");
+        return m_triggers.computeIfAbsent(new Band(on, off, true), this::createTrigger);
+    }
+
+    /**
+     * Constructs a SmartTrigger instance that becomes true when the shaped axis
+     * value falls below {@code on}, and only becomes false again once it rises
+     * above {@code off}. Calling this again with the same thresholds returns the
+     * same trigger.
+     *
+     * @param on  the value below which the trigger turns on
+     * @param off the value above which the trigger turns off, no less than
+     *            {@code on}
+     * @return a SmartTrigger instance with the given hysteresis band
+     */
+    public SmartTrigger below(double on, double off) {
+        if (off < on)
+            throw new IllegalArgumentException("The off threshold (" + off + ") must not be below the on threshold ("
+                    + on + ")");
+        return m_triggers.computeIfAbsent(new Band(on, off, false), this::createTrigger);
+    }
+
+    private SmartTrigger createTrigger(Band band) {
+        return SmartTrigger.from(m_loop, new HysteresisCondition(this, band.on(), band.off(), band.above()));
+    }
+
+    // For a fixed axis value the result does not depend on how many times it is
+    // read, so it does not need to track cycles itself
+    private static final class HysteresisCondition implements BooleanSupplier {
+        private final SmartAxis m_axis;
+        private final double m_on;
+        private final double m_off;
+        private final boolean m_above;
+        private boolean m_active;
+
+        HysteresisCondition(SmartAxis axis, double on, double off, boolean above) {
+            m_axis = axis;
+            m_on = on;
+            m_off = off;
+            m_above = above;
+        }
+
+        @Override
+        public boolean getAsBoolean() {
+            double value = m_axis.getAsDouble();
+            double threshold = m_active ? m_off : m_on;
+            m_active = m_above ? value > threshold : value < threshold;
+            return m_active;
+        }
+    }
+}
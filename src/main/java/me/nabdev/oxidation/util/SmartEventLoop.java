@@ -3,9 +3,13 @@
 
 package me.nabdev.oxidation.util;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.ConcurrentModificationException;
-import java.util.LinkedHashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
 
 import edu.wpi.first.wpilibj.event.EventLoop;
 import edu.wpi.first.wpilibj2.command.Command;
@@ -14,11 +18,114 @@ import edu.wpi.first.wpilibj2.command.Command;
  * A modified {@link EventLoop} that allows for binding actions to be run
  * when the loop is polled, and allows for commands to be cancelled when the
  * loop is stopped.
+ *
+ * <p>
+ * Bindings are stored in a flat array and polled in the order they were added.
+ * Bindings may be added at any time; one added while the loop is being polled
+ * is first run on the next poll.
+ *
+ * <p>
+ * {@link SmartTrigger} bindings are handled separately: each distinct trigger
+ * condition is sampled once per poll, its last value is kept in a packed
+ * bitset, and only conditions that changed dispatch to their bindings. The cost
+ * of a poll therefore grows with the number of distinct conditions rather than
+ * the number of bindings. Bindings on the same condition fire in the order they
+ * were added; conditions are dispatched in the order they were first bound.
+ * {@link SmartTrigger#runWhileTrue(Command) runWhileTrue} and
+ * {@link SmartTrigger#runWhileFalse(Command) runWhileFalse} bindings act on
+ * the condition's level rather than its edges, and run after every edge has
+ * been dispatched.
+ *
+ * <p>
+ * Each poll runs every plain binding before any trigger binding, so a plain
+ * binding always runs first in a cycle even if it was added after a trigger.
+ *
+ * <p>
+ * A loop that is not being polled (such as the loop of an inactive state)
+ * should be {@link #suspend() suspended}. When it is {@link #resume()
+ * resumed}, every condition is sampled again in one pass and that becomes the
+ * new baseline, so edges that happened while suspended are not fired late and
+ * a condition that is already true does not count as a rising edge.
  */
 public final class SmartEventLoop {
-    private final Collection<Runnable> m_bindings = new LinkedHashSet<>();
-    private final Collection<Command> m_commands = new LinkedHashSet<>();
-    private boolean m_running;
+    /** What a trigger binding does when its condition changes (or every poll). */
+    enum TriggerAction {
+        ON_TRUE, ON_FALSE, WHILE_TRUE, WHILE_FALSE, TOGGLE_ON_TRUE, TOGGLE_ON_FALSE, RUN_WHILE_TRUE, RUN_WHILE_FALSE
+    }
+
+    private record TriggerBinding(int condition, TriggerAction action, Command command) {
+    }
+
+    private record PendingTrigger(BooleanSupplier condition, TriggerAction action, Command command) {
+    }
+
+    private static final TriggerBinding[] NO_BINDINGS = new TriggerBinding[0];
+
+    private Runnable[] m_bindings = new Runnable[8];
+    private int m_bindingCount;
+    private Command[] m_commands = new Command[8];
+    private int m_commandCount;
+    private final ConditionCache m_cache;
+    private SchedulerAdapter m_scheduler = SchedulerAdapter.COMMAND_SCHEDULER;
+    private boolean m_polling;
+    private boolean m_suspended;
+
+    // Distinct trigger conditions, their values from the last poll (one bit each),
+    // and the bindings to dispatch when they change
+    private final Map<BooleanSupplier, Integer> m_conditionIndices = new IdentityHashMap<>();
+    private BooleanSupplier[] m_conditions = new BooleanSupplier[8];
+    private TriggerBinding[][] m_edgeBindings = new TriggerBinding[8][];
+    private int m_conditionCount;
+    private long[] m_lastValues = new long[1];
+    private long m_edgeCount;
+
+    // Bindings that act on the condition's level every poll rather than its edges
+    private TriggerBinding[] m_levelBindings = new TriggerBinding[8];
+    private int m_levelBindingCount;
+
+    // Trigger bindings added while polling, applied at the start of the next poll
+    private final List<PendingTrigger> m_pendingTriggers = new ArrayList<>();
+
+    // Null unless profiling is enabled
+    private TimingHistogram[] m_bindingTimings;
+    private TimingHistogram[] m_triggerTimings;
+    private long[] m_triggerElapsed = new long[0];
+
+    /** Create a new event loop whose trigger conditions are not cached. */
+    public SmartEventLoop() {
+        this(null);
+    }
+
+    /**
+     * Create a new event loop whose trigger conditions are sampled at most once
+     * per cycle of the given cache.
+     *
+     * @param cache the cache to share conditions through, or null to disable
+     *              caching
+     */
+    public SmartEventLoop(ConditionCache cache) {
+        m_cache = cache;
+    }
+
+    /**
+     * Get the version of a condition that triggers on this loop should use.
+     *
+     * @param condition the condition
+     * @return the cached condition, or the condition itself if this loop has no
+     *         cache
+     */
+    public BooleanSupplier cache(BooleanSupplier condition) {
+        return m_cache == null ? condition : m_cache.get(condition);
+    }
+
+    /**
+     * Get the cache this loop's trigger conditions are sampled through.
+     *
+     * @return the cache, or null if this loop does not cache conditions
+     */
+    ConditionCache getCache() {
+        return m_cache;
+    }
 
     /**
      * Bind a new action to run when the loop is polled.
@@ -27,33 +134,391 @@ public final class SmartEventLoop {
      * @param action  the action to run.
      */
     public void bind(Command command, Runnable action) {
-        if (m_running) {
-            throw new ConcurrentModificationException("Cannot bind SmartEventLoop while it is running");
+        addCommand(command);
+        if (m_bindingCount == m_bindings.length)
+            m_bindings = Arrays.copyOf(m_bindings, m_bindingCount * 2);
+        m_bindings[m_bindingCount++] = action;
+    }
+
+    /**
+     * Bind a command to a trigger condition. The condition's starting value is
+     * sampled now, so a condition that is already true does not count as a rising
+     * edge on the first poll.
+     *
+     * @param condition the trigger condition
+     * @param action    what to do with the command as the condition changes
+     * @param command   the command
+     */
+    void bindTrigger(BooleanSupplier condition, TriggerAction action, Command command) {
+        if (m_polling) {
+            m_pendingTriggers.add(new PendingTrigger(condition, action, command));
+            return;
         }
-        m_commands.add(command);
-        m_bindings.add(action);
+        addCommand(command);
+
+        Integer existing = m_conditionIndices.get(condition);
+        int index = existing != null ? existing : addCondition(condition);
+        TriggerBinding binding = new TriggerBinding(index, action, command);
+
+        if (action == TriggerAction.RUN_WHILE_TRUE || action == TriggerAction.RUN_WHILE_FALSE) {
+            if (m_levelBindingCount == m_levelBindings.length)
+                m_levelBindings = Arrays.copyOf(m_levelBindings, m_levelBindingCount * 2);
+            m_levelBindings[m_levelBindingCount++] = binding;
+        } else {
+            TriggerBinding[] bindings = m_edgeBindings[index];
+            bindings = Arrays.copyOf(bindings, bindings.length + 1);
+            bindings[bindings.length - 1] = binding;
+            m_edgeBindings[index] = bindings;
+        }
+    }
+
+    private int addCondition(BooleanSupplier condition) {
+        int index = m_conditionCount++;
+        if (index == m_conditions.length) {
+            m_conditions = Arrays.copyOf(m_conditions, index * 2);
+            m_edgeBindings = Arrays.copyOf(m_edgeBindings, index * 2);
+        }
+        if ((index >> 6) == m_lastValues.length)
+            m_lastValues = Arrays.copyOf(m_lastValues, m_lastValues.length * 2);
+
+        m_conditions[index] = condition;
+        m_edgeBindings[index] = NO_BINDINGS;
+        m_conditionIndices.put(condition, index);
+        // A suspended loop samples every condition when it is resumed
+        if (!m_suspended)
+            setLastValue(index, condition.getAsBoolean());
+        return index;
+    }
+
+    private void addCommand(Command command) {
+        for (int i = 0; i < m_commandCount; i++) {
+            if (m_commands[i] == command)
+                return;
+        }
+        if (m_commandCount == m_commands.length)
+            m_commands = Arrays.copyOf(m_commands, m_commandCount * 2);
+        m_commands[m_commandCount++] = command;
     }
 
-    /** Poll all bindings. */
+    private void applyPendingTriggers() {
+        if (m_pendingTriggers.isEmpty())
+            return;
+        for (PendingTrigger pending : m_pendingTriggers) {
+            bindTrigger(pending.condition(), pending.action(), pending.command());
+        }
+        m_pendingTriggers.clear();
+    }
+
+    /**
+     * Poll all bindings. If the loop is suspended, it is resumed (and its
+     * triggers re-baselined) first.
+     */
     public void poll() {
-        m_running = true;
-        m_bindings.forEach(Runnable::run);
+        if (m_suspended)
+            resume();
+        applyPendingTriggers();
+
+        // Bindings added while polling land past this count (possibly in a new
+        // array), so they are picked up on the next poll
+        Runnable[] bindings = m_bindings;
+        int count = m_bindingCount;
+        m_polling = true;
+        try {
+            if (m_bindingTimings == null) {
+                for (int i = 0; i < count; i++) {
+                    bindings[i].run();
+                }
+                pollTriggers();
+                return;
+            }
+
+            m_bindingTimings = ensureTimings(m_bindingTimings, count);
+            for (int i = 0; i < count; i++) {
+                long start = System.nanoTime();
+                bindings[i].run();
+                m_bindingTimings[i].record(System.nanoTime() - start);
+            }
+            pollTriggersTimed();
+        } finally {
+            m_polling = false;
+        }
+    }
+
+    private void pollTriggers() {
+        int conditionCount = m_conditionCount;
+        for (int base = 0; base < conditionCount; base += 64) {
+            int word = base >> 6;
+            long values = sampleWord(base, Math.min(base + 64, conditionCount));
+            long changed = values ^ m_lastValues[word];
+            m_lastValues[word] = values;
+            while (changed != 0) {
+                int bit = Long.numberOfTrailingZeros(changed);
+                changed &= changed - 1;
+                dispatchEdge(base + bit, (values & (1L << bit)) != 0);
+            }
+        }
+
+        for (int i = 0; i < m_levelBindingCount; i++) {
+            dispatchLevel(m_levelBindings[i]);
+        }
+    }
+
+    // Same as pollTriggers, but one condition at a time so each can be timed
+    private void pollTriggersTimed() {
+        int conditionCount = m_conditionCount;
+        m_triggerTimings = ensureTimings(m_triggerTimings, conditionCount);
+        if (m_triggerElapsed.length < conditionCount)
+            m_triggerElapsed = new long[m_triggerTimings.length];
+
+        for (int i = 0; i < conditionCount; i++) {
+            long start = System.nanoTime();
+            boolean value = m_conditions[i].getAsBoolean();
+            if (value != getLastValue(i)) {
+                setLastValue(i, value);
+                dispatchEdge(i, value);
+            }
+            m_triggerElapsed[i] = System.nanoTime() - start;
+        }
+
+        for (int i = 0; i < m_levelBindingCount; i++) {
+            long start = System.nanoTime();
+            dispatchLevel(m_levelBindings[i]);
+            m_triggerElapsed[m_levelBindings[i].condition()] += System.nanoTime() - start;
+        }
+
+        for (int i = 0; i < conditionCount; i++) {
+            m_triggerTimings[i].record(m_triggerElapsed[i]);
+        }
+    }
+
+    private long sampleWord(int base, int end) {
+        long values = 0;
+        for (int i = base; i < end; i++) {
+            if (m_conditions[i].getAsBoolean())
+                values |= 1L << (i - base);
+        }
+        return values;
+    }
+
+    /**
+     * Stop polling this loop's triggers until it is resumed. Commands are left
+     * running; see {@link #stop()} to also cancel them.
+     */
+    public void suspend() {
+        m_suspended = true;
+    }
+
+    /**
+     * Resume a suspended loop, sampling every trigger condition in one pass and
+     * using the result as the baseline for edge detection.
+     */
+    public void resume() {
+        applyPendingTriggers();
+        int conditionCount = m_conditionCount;
+        for (int base = 0; base < conditionCount; base += 64) {
+            m_lastValues[base >> 6] = sampleWord(base, Math.min(base + 64, conditionCount));
+        }
+        m_suspended = false;
+    }
+
+    /**
+     * Check whether this loop is suspended.
+     *
+     * @return true if the loop is suspended
+     */
+    public boolean isSuspended() {
+        return m_suspended;
+    }
+
+    private void dispatchEdge(int condition, boolean rising) {
+        m_edgeCount++;
+        TriggerBinding[] bindings = m_edgeBindings[condition];
+        for (int i = 0; i < bindings.length; i++) {
+            Command command = bindings[i].command();
+            switch (bindings[i].action()) {
+                case ON_TRUE -> {
+                    if (rising)
+                        m_scheduler.schedule(command);
+                }
+                case ON_FALSE -> {
+                    if (!rising)
+                        m_scheduler.schedule(command);
+                }
+                case WHILE_TRUE -> {
+                    if (rising)
+                        m_scheduler.schedule(command);
+                    else
+                        m_scheduler.cancel(command);
+                }
+                case WHILE_FALSE -> {
+                    if (rising)
+                        m_scheduler.cancel(command);
+                    else
+                        m_scheduler.schedule(command);
+                }
+                case TOGGLE_ON_TRUE -> {
+                    if (rising)
+                        toggle(command);
+                }
+                case TOGGLE_ON_FALSE -> {
+                    if (!rising)
+                        toggle(command);
+                }
+                default -> {
+                }
+            }
+        }
+    }
+
+    private void dispatchLevel(TriggerBinding binding) {
+        boolean pressed = getLastValue(binding.condition());
+        boolean active = binding.action() == TriggerAction.RUN_WHILE_TRUE ? pressed : !pressed;
+        Command command = binding.command();
+        if (!m_scheduler.isScheduled(command) && active) {
+            m_scheduler.schedule(command);
+        } else if (m_scheduler.isScheduled(command) && !active) {
+            m_scheduler.cancel(command);
+        }
+    }
+
+    private void toggle(Command command) {
+        if (m_scheduler.isScheduled(command)) {
+            m_scheduler.cancel(command);
+        } else {
+            m_scheduler.schedule(command);
+        }
+    }
+
+    private boolean getLastValue(int condition) {
+        return (m_lastValues[condition >> 6] & (1L << condition)) != 0;
+    }
+
+    private void setLastValue(int condition, boolean value) {
+        if (value)
+            m_lastValues[condition >> 6] |= 1L << condition;
+        else
+            m_lastValues[condition >> 6] &= ~(1L << condition);
+    }
+
+    private static TimingHistogram[] ensureTimings(TimingHistogram[] timings, int count) {
+        if (timings.length >= count)
+            return timings;
+        int oldLength = timings.length;
+        timings = Arrays.copyOf(timings, count);
+        for (int i = oldLength; i < count; i++) {
+            timings[i] = new TimingHistogram();
+        }
+        return timings;
+    }
+
+    /**
+     * Enable or disable timing each binding and trigger condition when the loop
+     * is polled.
+     *
+     * @param enabled whether to record timings
+     */
+    public void setProfiling(boolean enabled) {
+        if (!enabled) {
+            m_bindingTimings = null;
+            m_triggerTimings = null;
+        } else if (m_bindingTimings == null) {
+            m_bindingTimings = new TimingHistogram[0];
+            m_triggerTimings = new TimingHistogram[0];
+        }
+    }
+
+    /**
+     * Set the scheduler that bound commands are scheduled and cancelled through.
+     *
+     * @param scheduler the scheduler to use
+     */
+    public void setScheduler(SchedulerAdapter scheduler) {
+        m_scheduler = scheduler;
+    }
+
+    /**
+     * Get the number of times a trigger condition on this loop has changed value
+     * while polling. Re-sampling conditions in {@link #resume()} does not count.
+     *
+     * @return the total number of trigger edges dispatched
+     */
+    public long getEdgeCount() {
+        return m_edgeCount;
+    }
+
+    /**
+     * Get the number of bindings on this loop, not counting trigger bindings.
+     *
+     * @return the number of bindings
+     */
+    public int getBindingCount() {
+        return m_bindingCount;
+    }
+
+    /**
+     * Get the timings recorded for a binding, in the order bindings were added.
+     *
+     * @param index the index of the binding
+     * @return the binding's timings, or null if profiling is disabled or the
+     *         binding has not been polled since profiling was enabled
+     */
+    public TimingHistogram getBindingTiming(int index) {
+        if (m_bindingTimings == null || index >= m_bindingTimings.length)
+            return null;
+        return m_bindingTimings[index];
+    }
+
+    /**
+     * Get the number of distinct trigger conditions bound to this loop.
+     *
+     * @return the number of trigger conditions
+     */
+    public int getTriggerCount() {
+        return m_conditionCount;
+    }
+
+    /**
+     * Get the timings recorded for a trigger condition (sampling it and running
+     * all of its bindings), in the order conditions were first bound.
+     *
+     * @param index the index of the condition
+     * @return the condition's timings, or null if profiling is disabled or the
+     *         condition has not been polled since profiling was enabled
+     */
+    public TimingHistogram getTriggerTiming(int index) {
+        if (m_triggerTimings == null || index >= m_triggerTimings.length)
+            return null;
+        return m_triggerTimings[index];
     }
 
     /** Clear all bindings. */
     public void clear() {
-        if (m_running) {
-            throw new ConcurrentModificationException("Cannot clear SmartEventLoop while it is running");
+        if (m_polling) {
+            throw new ConcurrentModificationException("Cannot clear SmartEventLoop while it is polling");
+        }
+        Arrays.fill(m_bindings, 0, m_bindingCount, null);
+        Arrays.fill(m_commands, 0, m_commandCount, null);
+        Arrays.fill(m_conditions, 0, m_conditionCount, null);
+        Arrays.fill(m_edgeBindings, 0, m_conditionCount, null);
+        Arrays.fill(m_levelBindings, 0, m_levelBindingCount, null);
+        Arrays.fill(m_lastValues, 0);
+        m_conditionIndices.clear();
+        m_pendingTriggers.clear();
+        m_bindingCount = 0;
+        m_commandCount = 0;
+        m_conditionCount = 0;
+        m_levelBindingCount = 0;
+        if (m_bindingTimings != null) {
+            m_bindingTimings = new TimingHistogram[0];
+            m_triggerTimings = new TimingHistogram[0];
         }
-        m_bindings.clear();
-        m_commands.clear();
     }
 
-    /** Stops the event loop and cancels all associated commands. */
+    /** Stops the event loop, suspending it and cancelling all associated commands. */
     public void stop() {
-        m_running = false;
-        for (Command c : m_commands) {
-            c.cancel();
+        m_suspended = true;
+        for (int i = 0; i < m_commandCount; i++) {
+            m_scheduler.cancel(m_commands[i]);
         }
     }
 
@@ -15,6 +15,7 @@ import java.util.function.BooleanSupplier;
  */
 public class SmartTrigger implements BooleanSupplier {
     private final BooleanSupplier m_condition;
+    private final TriggerExpression m_expression;
     private final SmartEventLoop m_loop;
 
     /**
@@ -25,7 +26,13 @@ public class SmartTrigger implements BooleanSupplier {
      */
     public SmartTrigger(SmartEventLoop loop, BooleanSupplier condition) {
         m_loop = requireNonNullParam(loop, "loop", "StateTrigger");
-        m_condition = requireNonNullParam(condition, "condition", "StateTrigger");
+        requireNonNullParam(condition, "condition", "StateTrigger");
+        // Composed triggers keep their expression (whose conditions are already
+        // cached) so that further composition can flatten it
+        m_expression = condition instanceof TriggerExpression expression ? expression
+                : TriggerExpression.of(m_loop.cache(condition));
+        m_condition = m_expression.getKind() == TriggerExpression.Kind.CONDITION ? m_expression.getCondition()
+                : m_loop.cache(m_expression);
     }
 
     /**
@@ -49,21 +56,7 @@ public class SmartTrigger implements BooleanSupplier {
      */
     public SmartTrigger onTrue(Command command) {
         requireNonNullParam(command, "command", "onTrue");
-        m_loop.bind(command,
-                new Runnable() {
-                    private boolean m_pressedLast = m_condition.getAsBoolean();
-
-                    @Override
-                    public void run() {
-                        boolean pressed = m_condition.getAsBoolean();
-
-                        if (!m_pressedLast && pressed) {
-                            command.schedule();
-                        }
-
-                        m_pressedLast = pressed;
-                    }
-                });
+        m_loop.bindTrigger(m_condition, SmartEventLoop.TriggerAction.ON_TRUE, command);
         return this;
     }
 
@@ -76,21 +69,7 @@ public class SmartTrigger implements BooleanSupplier {
      */
     public SmartTrigger onFalse(Command command) {
         requireNonNullParam(command, "command", "onFalse");
-        m_loop.bind(command,
-                new Runnable() {
-                    private boolean m_pressedLast = m_condition.getAsBoolean();
-
-                    @Override
-                    public void run() {
-                        boolean pressed = m_condition.getAsBoolean();
-
-                        if (m_pressedLast && !pressed) {
-                            command.schedule();
-                        }
-
-                        m_pressedLast = pressed;
-                    }
-                });
+        m_loop.bindTrigger(m_condition, SmartEventLoop.TriggerAction.ON_FALSE, command);
         return this;
     }
 
@@ -103,19 +82,7 @@ public class SmartTrigger implements BooleanSupplier {
      */
     public SmartTrigger runWhileTrue(Command command) {
         requireNonNullParam(command, "command", "whileTrue");
-        m_loop.bind(command,
-                new Runnable() {
-                    @Override
-                    public void run() {
-                        boolean pressed = m_condition.getAsBoolean();
-
-                        if (!command.isScheduled() && pressed) {
-                            command.schedule();
-                        } else if (command.isScheduled() && !pressed) {
-                            command.cancel();
-                        }
-                    }
-                });
+        m_loop.bindTrigger(m_condition, SmartEventLoop.TriggerAction.RUN_WHILE_TRUE, command);
         return this;
     }
 
@@ -128,19 +95,7 @@ public class SmartTrigger implements BooleanSupplier {
      */
     public SmartTrigger runWhileFalse(Command command) {
         requireNonNullParam(command, "command", "whileFalse");
-        m_loop.bind(command,
-                new Runnable() {
-                    @Override
-                    public void run() {
-                        boolean pressed = m_condition.getAsBoolean();
-
-                        if (!command.isScheduled() && !pressed) {
-                            command.schedule();
-                        } else if (command.isScheduled() && pressed) {
-                            command.cancel();
-                        }
-                    }
-                });
+        m_loop.bindTrigger(m_condition, SmartEventLoop.TriggerAction.RUN_WHILE_FALSE, command);
         return this;
     }
 
@@ -158,23 +113,7 @@ public class SmartTrigger implements BooleanSupplier {
      */
     public SmartTrigger whileTrue(Command command) {
         requireNonNullParam(command, "command", "whileTrue");
-        m_loop.bind(command,
-                new Runnable() {
-                    private boolean m_pressedLast = m_condition.getAsBoolean();
-
-                    @Override
-                    public void run() {
-                        boolean pressed = m_condition.getAsBoolean();
-
-                        if (!m_pressedLast && pressed) {
-                            command.schedule();
-                        } else if (m_pressedLast && !pressed) {
-                            command.cancel();
-                        }
-
-                        m_pressedLast = pressed;
-                    }
-                });
+        m_loop.bindTrigger(m_condition, SmartEventLoop.TriggerAction.WHILE_TRUE, command);
         return this;
     }
 
@@ -192,23 +131,7 @@ public class SmartTrigger implements BooleanSupplier {
      */
     public SmartTrigger whileFalse(Command command) {
         requireNonNullParam(command, "command", "whileFalse");
-        m_loop.bind(command,
-                new Runnable() {
-                    private boolean m_pressedLast = m_condition.getAsBoolean();
-
-                    @Override
-                    public void run() {
-                        boolean pressed = m_condition.getAsBoolean();
-
-                        if (m_pressedLast && !pressed) {
-                            command.schedule();
-                        } else if (!m_pressedLast && pressed) {
-                            command.cancel();
-                        }
-
-                        m_pressedLast = pressed;
-                    }
-                });
+        m_loop.bindTrigger(m_condition, SmartEventLoop.TriggerAction.WHILE_FALSE, command);
         return this;
     }
 
@@ -220,25 +143,7 @@ public class SmartTrigger implements BooleanSupplier {
      */
     public SmartTrigger toggleOnTrue(Command command) {
         requireNonNullParam(command, "command", "toggleOnTrue");
-        m_loop.bind(command,
-                new Runnable() {
-                    private boolean m_pressedLast = m_condition.getAsBoolean();
-
-                    @Override
-                    public void run() {
-                        boolean pressed = m_condition.getAsBoolean();
-
-                        if (!m_pressedLast && pressed) {
-                            if (command.isScheduled()) {
-                                command.cancel();
-                            } else {
-                                command.schedule();
-                            }
-                        }
-
-                        m_pressedLast = pressed;
-                    }
-                });
+        m_loop.bindTrigger(m_condition, SmartEventLoop.TriggerAction.TOGGLE_ON_TRUE, command);
         return this;
     }
 
@@ -250,25 +155,7 @@ public class SmartTrigger implements BooleanSupplier {
      */
     public SmartTrigger toggleOnFalse(Command command) {
         requireNonNullParam(command, "command", "toggleOnFalse");
-        m_loop.bind(command,
-                new Runnable() {
-                    private boolean m_pressedLast = m_condition.getAsBoolean();
-
-                    @Override
-                    public void run() {
-                        boolean pressed = m_condition.getAsBoolean();
-
-                        if (m_pressedLast && !pressed) {
-                            if (command.isScheduled()) {
-                                command.cancel();
-                            } else {
-                                command.schedule();
-                            }
-                        }
-
-                        m_pressedLast = pressed;
-                    }
-                });
+        m_loop.bindTrigger(m_condition, SmartEventLoop.TriggerAction.TOGGLE_ON_FALSE, command);
         return this;
     }
 
@@ -284,7 +171,7 @@ public class SmartTrigger implements BooleanSupplier {
      * @return A trigger which is active when both component triggers are active.
      */
     public SmartTrigger and(BooleanSupplier trigger) {
-        return new SmartTrigger(m_loop, () -> m_condition.getAsBoolean() && trigger.getAsBoolean());
+        return new SmartTrigger(m_loop, TriggerExpression.and(m_expression, expressionOf(trigger)));
     }
 
     /**
@@ -294,7 +181,7 @@ public class SmartTrigger implements BooleanSupplier {
      * @return A trigger which is active when either component trigger is active.
      */
     public SmartTrigger or(BooleanSupplier trigger) {
-        return new SmartTrigger(m_loop, () -> m_condition.getAsBoolean() || trigger.getAsBoolean());
+        return new SmartTrigger(m_loop, TriggerExpression.or(m_expression, expressionOf(trigger)));
     }
 
     /**
@@ -305,7 +192,26 @@ public class SmartTrigger implements BooleanSupplier {
      * @return the negated trigger
      */
     public SmartTrigger negate() {
-        return new SmartTrigger(m_loop, () -> !m_condition.getAsBoolean());
+        return new SmartTrigger(m_loop, TriggerExpression.not(m_expression));
+    }
+
+    /**
+     * Get the expression this trigger evaluates. Triggers composed with
+     * {@link #and(BooleanSupplier)}, {@link #or(BooleanSupplier)}, and
+     * {@link #negate()} share the conditions of the triggers they were built from.
+     *
+     * @return the expression for this trigger
+     */
+    public TriggerExpression getExpression() {
+        return m_expression;
+    }
+
+    private TriggerExpression expressionOf(BooleanSupplier condition) {
+        if (condition instanceof SmartTrigger trigger)
+            return trigger.m_expression;
+        if (condition instanceof TriggerExpression expression)
+            return expression;
+        return TriggerExpression.of(m_loop.cache(condition));
     }
 
     /**
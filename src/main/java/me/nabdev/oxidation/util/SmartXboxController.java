@@ -1,5 +1,11 @@
 package me.nabdev.oxidation.util;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.XboxController;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
 import edu.wpi.first.wpilibj2.command.button.CommandXboxController;
@@ -8,9 +14,35 @@ import edu.wpi.first.wpilibj2.command.button.CommandXboxController;
  * A wrapper around {@link CommandXboxController} that provides additional
  * functionality for handling Xbox controller inputs using {@link SmartTrigger}
  * and {@link SmartEventLoop}.
+ * <p>
+ * The controller's buttons, axes, and POV are read from the driver station
+ * once per cycle of the loop's {@link ConditionCache} into a snapshot, and
+ * every trigger made by this controller is evaluated from that snapshot. If the
+ * loop has no cache, the snapshot is taken again every time it is read.
+ * Calling the same accessor twice returns the same trigger.
  */
 public class SmartXboxController {
+    private record AxisThreshold(int axis, double threshold, boolean greater) {
+    }
+
+    private record AxisShaping(int axis, double deadband, double rateLimit) {
+    }
+
     private SmartEventLoop loop;
+    private final int port;
+
+    // The snapshot, and the cache cycle it was taken in
+    private int buttons;
+    private double[] axes = new double[0];
+    private int pov = -1;
+    private long snapshotCycle = -1;
+    private long snapshotCount;
+    private LongSupplier clock = RobotController::getFPGATime;
+
+    private final SmartTrigger[] buttonTriggers = new SmartTrigger[32];
+    private final Map<Integer, SmartTrigger> povTriggers = new HashMap<>();
+    private final Map<AxisThreshold, SmartTrigger> axisTriggers = new HashMap<>();
+    private final Map<AxisShaping, SmartAxis> shapedAxes = new HashMap<>();
     /**
      * The underlying {@link CommandXboxController} instance.
      */
@@ -26,6 +58,81 @@ public class SmartXboxController {
     public SmartXboxController(CommandXboxController controller, SmartEventLoop loop) {
         this.controller = controller;
         this.loop = loop;
+        this.port = controller.getHID().getPort();
+    }
+
+    private void updateSnapshot() {
+        ConditionCache cache = loop.getCache();
+        if (cache != null) {
+            if (cache.getCycle() == snapshotCycle)
+                return;
+            snapshotCycle = cache.getCycle();
+        }
+
+        buttons = DriverStation.getStickButtons(port);
+        int axisCount = DriverStation.getStickAxisCount(port);
+        if (axisCount != axes.length)
+            axes = new double[axisCount];
+        for (int i = 0; i < axisCount; i++) {
+            axes[i] = DriverStation.getStickAxis(port, i);
+        }
+        pov = DriverStation.getStickPOV(port, 0);
+        snapshotCount++;
+    }
+
+    /**
+     * Get the number of snapshots taken so far, so that state derived from the
+     * snapshot can be updated once per snapshot.
+     *
+     * @return the number of snapshots taken
+     */
+    long getSnapshotCount() {
+        return snapshotCount;
+    }
+
+    long now() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * Set the clock used to rate limit {@link SmartAxis shaped axes}.
+     *
+     * @param clock Returns the current time in microseconds
+     */
+    public void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Get the state of every button in this cycle's snapshot.
+     *
+     * @return a bitmask where bit {@code n - 1} is set if button {@code n} is
+     *         pressed
+     */
+    public int getButtons() {
+        updateSnapshot();
+        return buttons;
+    }
+
+    /**
+     * Get the value of an axis from this cycle's snapshot.
+     *
+     * @param axis the axis to read, starting at 0
+     * @return the value of the axis, or 0 if the controller does not have it
+     */
+    public double getAxis(int axis) {
+        updateSnapshot();
+        return axis >= 0 && axis < axes.length ? axes[axis] : 0;
+    }
+
+    /**
+     * Get the angle of the default (index 0) POV from this cycle's snapshot.
+     *
+     * @return the POV angle in degrees, or -1 if it is not pressed
+     */
+    public int getPOV() {
+        updateSnapshot();
+        return pov;
     }
 
     /**
@@ -46,7 +153,7 @@ public class SmartXboxController {
      *         loop}.
      */
     public SmartTrigger leftBumper() {
-        return SmartTrigger.from(loop, controller.leftBumper());
+        return button(XboxController.Button.kLeftBumper.value);
     }
 
     /**
@@ -58,7 +165,7 @@ public class SmartXboxController {
      *         loop}.
      */
     public SmartTrigger rightBumper() {
-        return SmartTrigger.from(loop, controller.rightBumper());
+        return button(XboxController.Button.kRightBumper.value);
     }
 
     /**
@@ -70,7 +177,7 @@ public class SmartXboxController {
      *         button loop}.
      */
     public SmartTrigger leftStick() {
-        return SmartTrigger.from(loop, controller.leftStick());
+        return button(XboxController.Button.kLeftStick.value);
     }
 
     /**
@@ -82,7 +189,7 @@ public class SmartXboxController {
      *         button loop}.
      */
     public SmartTrigger rightStick() {
-        return SmartTrigger.from(loop, controller.rightStick());
+        return button(XboxController.Button.kRightStick.value);
     }
 
     /**
@@ -94,7 +201,7 @@ public class SmartXboxController {
      *         loop}.
      */
     public SmartTrigger a() {
-        return SmartTrigger.from(loop, controller.a());
+        return button(XboxController.Button.kA.value);
     }
 
     /**
@@ -106,7 +213,7 @@ public class SmartXboxController {
      *         loop}.
      */
     public SmartTrigger b() {
-        return SmartTrigger.from(loop, controller.b());
+        return button(XboxController.Button.kB.value);
     }
 
     /**
@@ -118,7 +225,7 @@ public class SmartXboxController {
      *         loop}.
      */
     public SmartTrigger x() {
-        return SmartTrigger.from(loop, controller.x());
+        return button(XboxController.Button.kX.value);
     }
 
     /**
@@ -130,7 +237,7 @@ public class SmartXboxController {
      *         loop}.
      */
     public SmartTrigger y() {
-        return SmartTrigger.from(loop, controller.y());
+        return button(XboxController.Button.kY.value);
     }
 
     /**
@@ -142,7 +249,7 @@ public class SmartXboxController {
      *         loop}.
      */
     public SmartTrigger start() {
-        return SmartTrigger.from(loop, controller.start());
+        return button(XboxController.Button.kStart.value);
     }
 
     /**
@@ -154,7 +261,7 @@ public class SmartXboxController {
      *         loop}.
      */
     public SmartTrigger back() {
-        return SmartTrigger.from(loop, controller.back());
+        return button(XboxController.Button.kBack.value);
     }
 
     /**
@@ -176,7 +283,7 @@ public class SmartXboxController {
      *         button loop}.
      */
     public SmartTrigger leftTrigger(double threshold) {
-        return SmartTrigger.from(loop, controller.leftTrigger(threshold));
+        return axisGreaterThan(XboxController.Axis.kLeftTrigger.value, threshold);
     }
 
     /**
@@ -214,7 +321,7 @@ public class SmartXboxController {
      *         button loop}.
      */
     public SmartTrigger rightTrigger(double threshold) {
-        return SmartTrigger.from(loop, controller.rightTrigger(threshold));
+        return axisGreaterThan(XboxController.Axis.kRightTrigger.value, threshold);
     }
 
     /**
@@ -243,7 +350,15 @@ public class SmartXboxController {
      *         loop}.
      */
     public SmartTrigger button(int button) {
-        return SmartTrigger.from(loop, controller.button(button));
+        if (button < 1 || button > 32)
+            throw new IllegalArgumentException("Button index must be between 1 and 32, got " + button);
+        SmartTrigger trigger = buttonTriggers[button - 1];
+        if (trigger == null) {
+            int mask = 1 << (button - 1);
+            trigger = SmartTrigger.from(loop, () -> (getButtons() & mask) != 0);
+            buttonTriggers[button - 1] = trigger;
+        }
+        return trigger;
     }
 
     /**
@@ -263,7 +378,7 @@ public class SmartXboxController {
      * @return a SmartTrigger instance based around this angle of a POV on the HID.
      */
     public SmartTrigger pov(int angle) {
-        return SmartTrigger.from(loop, controller.pov(angle));
+        return povTriggers.computeIfAbsent(angle, a -> SmartTrigger.from(loop, () -> getPOV() == a));
     }
 
     /**
@@ -426,7 +541,8 @@ public class SmartXboxController {
      *         threshold.
      */
     public SmartTrigger axisLessThan(int axis, double threshold) {
-        return SmartTrigger.from(loop, controller.axisLessThan(axis, threshold));
+        return axisTriggers.computeIfAbsent(new AxisThreshold(axis, threshold, false),
+                k -> SmartTrigger.from(loop, () -> getAxis(axis) < threshold));
     }
 
     /**
@@ -445,6 +561,97 @@ public class SmartXboxController {
      *         threshold.
      */
     public SmartTrigger axisGreaterThan(int axis, double threshold) {
-        return SmartTrigger.from(loop, controller.axisGreaterThan(axis, threshold));
+        return axisTriggers.computeIfAbsent(new AxisThreshold(axis, threshold, true),
+                k -> SmartTrigger.from(loop, () -> getAxis(axis) > threshold));
+    }
+
+    /**
+     * Gets an axis shaped by a deadband and rate limit. Calling this again with
+     * the same arguments returns the same axis.
+     *
+     * @param axis      The axis to read, starting at 0
+     * @param deadband  Values with a magnitude below this are treated as 0, and
+     *                  the rest are rescaled to still reach 1
+     * @param rateLimit The most the shaped value can change per second, or
+     *                  {@link Double#POSITIVE_INFINITY} for no limit
+     * @return the shaped axis
+     */
+    public SmartAxis axis(int axis, double deadband, double rateLimit) {
+        return shapedAxes.computeIfAbsent(new AxisShaping(axis, deadband, rateLimit),
+                k -> new SmartAxis(this, loop, axis, deadband, rateLimit));
+    }
+
+    /**
+     * Gets an axis shaped by a deadband, without a rate limit.
+     *
+     * @param axis     The axis to read, starting at 0
+     * @param deadband Values with a magnitude below this are treated as 0
+     * @return the shaped axis
+     */
+    public SmartAxis axis(int axis, double deadband) {
+        return axis(axis, deadband, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Gets an axis with no deadband or rate limit, for use with hysteresis
+     * triggers.
+     *
+     * @param axis The axis to read, starting at 0
+     * @return the axis
+     */
+    public SmartAxis axis(int axis) {
+        return axis(axis, 0, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Constructs a SmartTrigger instance that becomes true when the axis value
+     * rises above {@code on}, and stays true until it falls below {@code off}.
+     *
+     * @param axis The axis to read, starting at 0
+     * @param on   The value above which this trigger turns on
+     * @param off  The value below which this trigger turns off again
+     * @return a SmartTrigger instance with the given hysteresis band
+     */
+    public SmartTrigger axisGreaterThan(int axis, double on, double off) {
+        return axis(axis).above(on, off);
+    }
+
+    /**
+     * Constructs a SmartTrigger instance that becomes true when the axis value
+     * falls below {@code on}, and stays true until it rises above {@code off}.
+     *
+     * @param axis The axis to read, starting at 0
+     * @param on   The value below which this trigger turns on
+     * @param off  The value above which this trigger turns off again
+     * @return a SmartTrigger instance with the given hysteresis band
+     */
+    public SmartTrigger axisLessThan(int axis, double on, double off) {
+        return axis(axis).below(on, off);
+    }
+
+    /**
+     * Constructs a SmartTrigger instance that becomes true when the left trigger
+     * is pressed past {@code on}, and stays true until it is released below
+     * {@code off}.
+     *
+     * @param on  The axis value above which this trigger turns on
+     * @param off The axis value below which this trigger turns off again
+     * @return a SmartTrigger instance with the given hysteresis band
+     */
+    public SmartTrigger leftTrigger(double on, double off) {
+        return axisGreaterThan(XboxController.Axis.kLeftTrigger.value, on, off);
+    }
+
+    /**
+     * Constructs a SmartTrigger instance that becomes true when the right trigger
+     * is pressed past {@code on}, and stays true until it is released below
+     * {@code off}.
+     *
+     * @param on  The axis value above which this trigger turns on
+     * @param off The axis value below which this trigger turns off again
+     * @return a SmartTrigger instance with the given hysteresis band
+     */
+    public SmartTrigger rightTrigger(double on, double off) {
+        return axisGreaterThan(XboxController.Axis.kRightTrigger.value, on, off);
     }
 }
@@ -0,0 +1,92 @@
+package me.nabdev.oxidation.util;
+
+import java.util.Arrays;
+
+/**
+ * A fixed size histogram of durations in nanoseconds. Buckets are spaced
+ * logarithmically (four per power of two), so percentiles are accurate to
+ * within about 20% while recording is a couple of bit operations and never
+ * allocates.
+ */
+public final class TimingHistogram {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long[] m_counts = new long[64 * SUB_BUCKETS];
+    private long m_count;
+    private long m_max;
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        m_counts[bucketFor(nanos)]++;
+        m_count++;
+        if (nanos > m_max)
+            m_max = nanos;
+    }
+
+    /**
+     * Get the number of durations recorded since the last reset.
+     *
+     * @return the number of samples
+     */
+    public long getCount() {
+        return m_count;
+    }
+
+    /**
+     * Get the longest duration recorded since the last reset.
+     *
+     * @return the maximum in nanoseconds
+     */
+    public long getMax() {
+        return m_max;
+    }
+
+    /**
+     * Get an upper bound on the given percentile of the recorded durations.
+     *
+     * @param percentile the percentile, between 0 and 1 (e.g. 0.99)
+     * @return the percentile in nanoseconds, or 0 if nothing has been recorded
+     */
+    public long getPercentile(double percentile) {
+        if (m_count == 0)
+            return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile * m_count));
+        long seen = 0;
+        for (int i = 0; i < m_counts.length; i++) {
+            seen += m_counts[i];
+            if (seen >= target)
+                return Math.min(upperBound(i), m_max);
+        }
+        return m_max;
+    }
+
+    /** Clear all recorded durations. */
+    public void reset() {
+        Arrays.fill(m_counts, 0);
+        m_count = 0;
+        m_max = 0;
+    }
+
+    private static int bucketFor(long nanos) {
+        if (nanos < SUB_BUCKETS)
+            return (int) nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return exponent * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int exponent = bucket / SUB_BUCKETS;
+        int subBucket = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
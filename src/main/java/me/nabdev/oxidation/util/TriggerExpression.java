@@ -0,0 +1,253 @@
+package me.nabdev.oxidation.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A boolean expression over conditions, built by composing
+ * {@link SmartTrigger}s with {@link SmartTrigger#and(BooleanSupplier) and},
+ * {@link SmartTrigger#or(BooleanSupplier) or}, and
+ * {@link SmartTrigger#negate() negate}.
+ * <p>
+ * Nested ANDs and ORs are flattened, double negations cancel, and a condition
+ * that appears more than once is only stored once. The first time the
+ * expression is evaluated it is compiled into a flat branching program: each
+ * step samples one condition and jumps to the next step depending on the
+ * result, so evaluation short circuits without any nested calls.
+ */
+public final class TriggerExpression implements BooleanSupplier {
+    /** The kinds of expression nodes. */
+    public enum Kind {
+        /** A single condition */
+        CONDITION,
+        /** True when every operand is true */
+        AND,
+        /** True when any operand is true */
+        OR,
+        /** True when its single operand is false */
+        NOT
+    }
+
+    private static final int TRUE = -1;
+    private static final int FALSE = -2;
+
+    private final Kind m_kind;
+    private final BooleanSupplier m_condition;
+    private final List<TriggerExpression> m_operands;
+
+    // The compiled program, built on first evaluation
+    private BooleanSupplier[] m_conditions;
+    private int[] m_conditionIndices;
+    private int[] m_ifTrue;
+    private int[] m_ifFalse;
+    private int m_entry;
+
+    private TriggerExpression(Kind kind, BooleanSupplier condition, List<TriggerExpression> operands) {
+        m_kind = kind;
+        m_condition = condition;
+        m_operands = operands;
+    }
+
+    /**
+     * Create an expression for a single condition. If the condition is already an
+     * expression, it is returned as is.
+     *
+     * @param condition the condition
+     * @return the expression
+     */
+    public static TriggerExpression of(BooleanSupplier condition) {
+        if (condition instanceof TriggerExpression expression)
+            return expression;
+        return new TriggerExpression(Kind.CONDITION, condition, List.of());
+    }
+
+    /**
+     * Create an expression that is true when both operands are true.
+     *
+     * @param a the first operand
+     * @param b the second operand
+     * @return the expression
+     */
+    public static TriggerExpression and(TriggerExpression a, TriggerExpression b) {
+        return combine(Kind.AND, a, b);
+    }
+
+    /**
+     * Create an expression that is true when either operand is true.
+     *
+     * @param a the first operand
+     * @param b the second operand
+     * @return the expression
+     */
+    public static TriggerExpression or(TriggerExpression a, TriggerExpression b) {
+        return combine(Kind.OR, a, b);
+    }
+
+    /**
+     * Create an expression that is true when the operand is false.
+     *
+     * @param a the operand
+     * @return the expression
+     */
+    public static TriggerExpression not(TriggerExpression a) {
+        if (a.m_kind == Kind.NOT)
+            return a.m_operands.get(0);
+        return new TriggerExpression(Kind.NOT, null, List.of(a));
+    }
+
+    private static TriggerExpression combine(Kind kind, TriggerExpression a, TriggerExpression b) {
+        List<TriggerExpression> operands = new ArrayList<>();
+        addOperands(kind, a, operands);
+        addOperands(kind, b, operands);
+        if (operands.size() == 1)
+            return operands.get(0);
+        return new TriggerExpression(kind, null, Collections.unmodifiableList(operands));
+    }
+
+    private static void addOperands(Kind kind, TriggerExpression expression, List<TriggerExpression> operands) {
+        if (expression.m_kind == kind) {
+            for (TriggerExpression operand : expression.m_operands) {
+                addOperand(operand, operands);
+            }
+        } else {
+            addOperand(expression, operands);
+        }
+    }
+
+    // a && a is just a, so repeated operands are dropped
+    private static void addOperand(TriggerExpression operand, List<TriggerExpression> operands) {
+        for (TriggerExpression existing : operands) {
+            if (existing == operand || (existing.m_kind == Kind.CONDITION && operand.m_kind == Kind.CONDITION
+                    && existing.m_condition == operand.m_condition))
+                return;
+        }
+        operands.add(operand);
+    }
+
+    /**
+     * Get the kind of this node.
+     *
+     * @return the kind of node
+     */
+    public Kind getKind() {
+        return m_kind;
+    }
+
+    /**
+     * Get the condition of a {@link Kind#CONDITION} node.
+     *
+     * @return the condition, or null if this is not a condition node
+     */
+    public BooleanSupplier getCondition() {
+        return m_condition;
+    }
+
+    /**
+     * Get the operands of an AND, OR, or NOT node.
+     *
+     * @return the operands, which is empty for a condition node
+     */
+    public List<TriggerExpression> getOperands() {
+        return m_operands;
+    }
+
+    /**
+     * Get the number of distinct conditions in this expression.
+     *
+     * @return the number of conditions
+     */
+    public int getConditionCount() {
+        compile();
+        return m_conditions.length;
+    }
+
+    @Override
+    public boolean getAsBoolean() {
+        if (m_conditions == null)
+            compile();
+        int step = m_entry;
+        while (step >= 0) {
+            step = m_conditions[m_conditionIndices[step]].getAsBoolean() ? m_ifTrue[step] : m_ifFalse[step];
+        }
+        return step == TRUE;
+    }
+
+    private void compile() {
+        if (m_conditions != null)
+            return;
+        Map<BooleanSupplier, Integer> conditionIndices = new IdentityHashMap<>();
+        List<BooleanSupplier> conditions = new ArrayList<>();
+        List<int[]> steps = new ArrayList<>();
+        m_entry = compile(this, TRUE, FALSE, conditionIndices, conditions, steps);
+
+        m_conditionIndices = new int[steps.size()];
+        m_ifTrue = new int[steps.size()];
+        m_ifFalse = new int[steps.size()];
+        for (int i = 0; i < steps.size(); i++) {
+            m_conditionIndices[i] = steps.get(i)[0];
+            m_ifTrue[i] = steps.get(i)[1];
+            m_ifFalse[i] = steps.get(i)[2];
+        }
+        m_conditions = conditions.toArray(new BooleanSupplier[0]);
+    }
+
+    /**
+     * Add the steps for a node, given where to go once its value is known.
+     * Operands are compiled last to first so that each knows the step to
+     * continue to.
+     *
+     * @return the index of the node's first step
+     */
+    private static int compile(TriggerExpression node, int ifTrue, int ifFalse,
+            Map<BooleanSupplier, Integer> conditionIndices, List<BooleanSupplier> conditions, List<int[]> steps) {
+        switch (node.m_kind) {
+            case CONDITION -> {
+                int index = conditionIndices.computeIfAbsent(node.m_condition, c -> {
+                    conditions.add(c);
+                    return conditions.size() - 1;
+                });
+                steps.add(new int[] { index, ifTrue, ifFalse });
+                return steps.size() - 1;
+            }
+            case NOT -> {
+                return compile(node.m_operands.get(0), ifFalse, ifTrue, conditionIndices, conditions, steps);
+            }
+            case AND -> {
+                int next = ifTrue;
+                for (int i = node.m_operands.size() - 1; i >= 0; i--) {
+                    next = compile(node.m_operands.get(i), next, ifFalse, conditionIndices, conditions, steps);
+                }
+                return next;
+            }
+            case OR -> {
+                int next = ifFalse;
+                for (int i = node.m_operands.size() - 1; i >= 0; i--) {
+                    next = compile(node.m_operands.get(i), ifTrue, next, conditionIndices, conditions, steps);
+                }
+                return next;
+            }
+            default -> throw new IllegalStateException("Unknown expression kind " + node.m_kind);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return switch (m_kind) {
+            case CONDITION -> "c" + Integer.toHexString(System.identityHashCode(m_condition));
+            case NOT -> "!" + m_operands.get(0);
+            case AND, OR -> {
+                StringBuilder builder = new StringBuilder("(");
+                for (int i = 0; i < m_operands.size(); i++) {
+                    if (i > 0)
+                        builder.append(m_kind == Kind.AND ? " && " : " || ");
+                    builder.append(m_operands.get(i));
+                }
+                yield builder.append(')').toString();
+            }
+        };
+    }
+}
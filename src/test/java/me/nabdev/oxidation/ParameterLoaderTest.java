@@ -0,0 +1,101 @@
+package me.nabdev.oxidation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+class ParameterLoaderTest {
+    private record Inner(double speed, boolean flip) implements StateParameters {
+    }
+
+    private record Outer(String name, int laps, long id, double[] weights, Inner inner) implements StateParameters {
+        Outer {
+            if (laps < 0)
+                throw new IllegalArgumentException("laps must not be negative");
+        }
+    }
+
+    private record Unsupported(Object value) implements StateParameters {
+    }
+
+    private static final String JSON = "{\"name\": \"a\", \"laps\": 3, \"unused\": [1, {}], \"id\": 9000000000, "
+            + "\"weights\": [0.5, -1], \"inner\": {\"speed\": 2.5, \"flip\": true}}";
+
+    private static JSONObject json(int laps) {
+        return new JSONObject()
+                .put("name", "a")
+                .put("laps", laps)
+                .put("unused", new JSONArray().put(1).put(new JSONObject()))
+                .put("id", 9000000000L)
+                .put("weights", new JSONArray().put(0.5).put(-1))
+                .put("inner", new JSONObject().put("speed", 2.5).put("flip", true));
+    }
+
+    private static <P extends Record & StateParameters> P load(String json, Class<P> type) throws IOException {
+        Path file = Files.createTempFile("parameters", ".json");
+        try {
+            Files.writeString(file, json, StandardCharsets.UTF_8);
+            return ParameterLoader.load(file, type);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void assertOuter(Outer outer) {
+        assertEquals("a", outer.name());
+        assertEquals(3, outer.laps());
+        assertEquals(9000000000L, outer.id());
+        assertArrayEquals(new double[] { 0.5, -1 }, outer.weights());
+        assertEquals(new Inner(2.5, true), outer.inner());
+    }
+
+    @Test
+    void bindAndLoadCreateTheSameRecord() throws IOException {
+        assertOuter(StateParameters.bind(Outer.class, json(3)));
+        assertOuter(load(JSON, Outer.class));
+    }
+
+    @Test
+    void bindAndLoadReportMissingComponentsTheSameWay() {
+        JSONObject json = json(3);
+        json.remove("id");
+        IllegalArgumentException bound = assertThrows(IllegalArgumentException.class,
+                () -> StateParameters.bind(Outer.class, json));
+        IllegalArgumentException loaded = assertThrows(IllegalArgumentException.class,
+                () -> load("{\"name\": \"a\", \"laps\": 3}", Outer.class));
+
+        assertEquals("Missing parameter \"id\" for Outer", bound.getMessage());
+        assertEquals("Missing parameter \"id\" for Outer", loaded.getMessage());
+    }
+
+    @Test
+    void bindAndLoadThrowConstructorExceptionsAsTheyAre() {
+        IllegalArgumentException bound = assertThrows(IllegalArgumentException.class,
+                () -> StateParameters.bind(Outer.class, json(-1)));
+        IllegalArgumentException loaded = assertThrows(IllegalArgumentException.class,
+                () -> load(JSON.replace("\"laps\": 3", "\"laps\": -1"), Outer.class));
+
+        assertEquals("laps must not be negative", bound.getMessage());
+        assertEquals("laps must not be negative", loaded.getMessage());
+    }
+
+    @Test
+    void bindAndLoadRejectUnsupportedComponents() {
+        IllegalArgumentException bound = assertThrows(IllegalArgumentException.class,
+                () -> StateParameters.bind(Unsupported.class, new JSONObject().put("value", 1)));
+        IllegalArgumentException loaded = assertThrows(IllegalArgumentException.class,
+                () -> load("{\"value\": 1}", Unsupported.class));
+
+        assertEquals("Unsupported parameter type Object", bound.getMessage());
+        assertEquals("Unsupported parameter type Object", loaded.getMessage());
+    }
+}
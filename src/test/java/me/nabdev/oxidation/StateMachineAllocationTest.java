@@ -0,0 +1,98 @@
+package me.nabdev.oxidation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+
+class StateMachineAllocationTest {
+    private static final int WARMUP_CYCLES = 20_000;
+    private static final int MEASURED_CYCLES = 10_000;
+
+    // Two chains of nested states, with one transition between their leaves that
+    // is true on every other cycle when flapping, so that steady state still
+    // changes states
+    private static final class TestMachine extends StateMachineBase {
+        final State a;
+        final State b;
+        boolean flapping;
+        boolean flip = false;
+        long time = 0;
+
+        TestMachine(boolean flapping) {
+            this.flapping = flapping;
+            setClock(() -> time);
+            setValidateOnStartup(false);
+            setTelemetryFormat(TelemetryFormat.NONE);
+
+            a = chain("A", 4);
+            b = chain("B", 4);
+            a.withTransition(b, () -> flip, "Flip");
+            b.withTransition(a, () -> !flip, "Flop");
+            currentState = a;
+        }
+
+        private State chain(String prefix, int depth) {
+            State level = new State(this) {
+            }.withName(prefix + "0");
+            registerToRootState(level);
+            for (int i = 1; i < depth; i++) {
+                State child = new State(this) {
+                }.withName(prefix + i);
+                level.withDefaultChild(child);
+                level = child;
+            }
+            return level;
+        }
+
+        void tick() {
+            if (flapping)
+                flip = !flip;
+            time += 20_000;
+            periodic();
+        }
+    }
+
+    // Bytes allocated by the current thread over the measured cycles, after
+    // warming the machine up
+    private static long allocatedBytes(TestMachine machine) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        machine.onStartup();
+        for (int i = 0; i < WARMUP_CYCLES; i++) {
+            machine.tick();
+        }
+
+        // Read once beforehand so that any allocation done by the first call is not
+        // counted
+        threads.getThreadAllocatedBytes(thread);
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < MEASURED_CYCLES; i++) {
+            machine.tick();
+        }
+        return threads.getThreadAllocatedBytes(thread) - before;
+    }
+
+    @Test
+    void steadyStatePeriodicDoesNotAllocate() {
+        TestMachine machine = new TestMachine(false);
+
+        long allocated = allocatedBytes(machine);
+
+        assertSame(machine.a, machine.currentState);
+        assertEquals(0, allocated, "Bytes allocated by " + MEASURED_CYCLES + " cycles");
+    }
+
+    @Test
+    void stateChangesDoNotAllocate() {
+        TestMachine machine = new TestMachine(true);
+
+        long allocated = allocatedBytes(machine);
+
+        assertEquals(0, allocated, "Bytes allocated by " + MEASURED_CYCLES + " cycles");
+    }
+}
@@ -0,0 +1,64 @@
+package me.nabdev.oxidation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import me.nabdev.oxidation.sim.StateMachineSimulation;
+import me.nabdev.oxidation.util.ConditionRecording;
+
+class StateMachineReplayTest {
+    private static final class TestMachine extends StateMachineBase {
+        boolean ready = false;
+
+        // A miswired machine starts to the wrong state, but creates its conditions
+        // in the same order, so the replay still lines up with the recording
+        TestMachine(boolean miswired) {
+            State idle = new State(this) {
+            }.withName("Idle");
+            State running = new State(this) {
+            }.withName("Running");
+            State other = new State(this) {
+            }.withName("Other");
+            registerToRootState(idle, running, other);
+            idle.withTransition(miswired ? other : running, () -> ready, "Start");
+            running.withTransition(idle, () -> !ready, "Stop");
+            currentState = idle;
+        }
+    }
+
+    private static ConditionRecording record() {
+        TestMachine machine = new TestMachine(false);
+        StateMachineSimulation sim = new StateMachineSimulation(machine);
+        sim.at(0.1, () -> machine.ready = true).at(0.3, () -> machine.ready = false);
+        ConditionRecording recording = machine.startRecording();
+        sim.start();
+        sim.run(0.5);
+        machine.stopRecording();
+        return recording;
+    }
+
+    @Test
+    void replayReproducesTheRecordedStates() {
+        ConditionRecording recording = record();
+
+        StateMachineReplay.Result result = StateMachineReplay.run(() -> new TestMachine(false), recording);
+
+        assertTrue(result.matches());
+        assertEquals(recording.getFrameCount(), result.stateIds().length);
+    }
+
+    @Test
+    void replayReportsTheFirstDivergentFrame() {
+        ConditionRecording recording = record();
+
+        StateMachineReplay.Result result = StateMachineReplay.run(() -> new TestMachine(true), recording);
+
+        assertFalse(result.matches());
+        // Frame 0 is startup, and the frame at 0.1 seconds is the sixth cycle
+        assertEquals(6, result.firstDivergence());
+        assertEquals(recording.getCheckpoint(6), result.divergentStateId());
+    }
+}
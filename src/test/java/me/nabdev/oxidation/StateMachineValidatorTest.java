@@ -0,0 +1,112 @@
+package me.nabdev.oxidation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class StateMachineValidatorTest {
+    private record Parameters(String mode) implements StateParameters {
+        @Override
+        public void validate() {
+            switch (mode) {
+                case "argument" -> throw new IllegalArgumentException("bad argument");
+                case "state" -> throw new IllegalStateException("bad state");
+                case "unsupported" -> throw new UnsupportedOperationException();
+                default -> {
+                }
+            }
+        }
+    }
+
+    private static final class TestMachine extends StateMachineBase {
+        final State state;
+
+        TestMachine(String mode) {
+            setValidateOnStartup(false);
+            setTelemetryFormat(TelemetryFormat.NONE);
+            state = new State(this, new Parameters(mode)) {
+            }.withName("Parameterized");
+            registerToRootState(state);
+            currentState = state;
+        }
+    }
+
+    // Starts outside a parent with a default child and a child added without an
+    // entrance condition
+    private static final class ReachabilityMachine extends StateMachineBase {
+        final State start = state("Start");
+        final State parent = state("Parent");
+        final State fallback = state("Default");
+        final State hidden = state("Hidden");
+
+        ReachabilityMachine() {
+            setValidateOnStartup(false);
+            setTelemetryFormat(TelemetryFormat.NONE);
+            registerToRootState(start, parent);
+            parent.withDefaultChild(fallback).withChild(hidden);
+            start.withTransition(parent, () -> true, "Enter");
+            currentState = start;
+        }
+
+        private State state(String name) {
+            return new State(this) {
+            }.withName(name);
+        }
+    }
+
+    @Test
+    void childWithoutEntranceConditionIsUnreachableWithoutATransition() {
+        ReachabilityMachine machine = new ReachabilityMachine();
+        List<ValidationIssue> issues = machine.validate();
+
+        assertEquals(1, issues.size());
+        assertSame(machine.hidden, issues.get(0).state());
+        assertEquals(ValidationIssue.Severity.WARNING, issues.get(0).severity());
+    }
+
+    @Test
+    void childWithoutEntranceConditionIsReachableByATransition() {
+        ReachabilityMachine machine = new ReachabilityMachine();
+        machine.fallback.withTransition(machine.hidden, () -> true, "Hide");
+
+        assertEquals(List.of(), machine.validate());
+    }
+
+    @Test
+    void validParametersAreNotReported() {
+        assertEquals(List.of(), new TestMachine("valid").validate());
+    }
+
+    @Test
+    void illegalArgumentIsReported() {
+        TestMachine machine = new TestMachine("argument");
+        List<ValidationIssue> issues = machine.validate();
+
+        assertEquals(1, issues.size());
+        assertSame(machine.state, issues.get(0).state());
+        assertEquals(ValidationIssue.Severity.ERROR, issues.get(0).severity());
+        assertEquals("has invalid parameters: bad argument", issues.get(0).message());
+    }
+
+    @Test
+    void otherRuntimeExceptionsAreReported() {
+        TestMachine machine = new TestMachine("state");
+        List<ValidationIssue> issues = machine.validate();
+
+        assertEquals(1, issues.size());
+        assertEquals(ValidationIssue.Severity.ERROR, issues.get(0).severity());
+        assertEquals("has invalid parameters: bad state", issues.get(0).message());
+    }
+
+    @Test
+    void exceptionsWithoutAMessageAreReportedByType() {
+        TestMachine machine = new TestMachine("unsupported");
+        List<ValidationIssue> issues = machine.validate();
+
+        assertEquals(1, issues.size());
+        assertEquals("has invalid parameters: java.lang.UnsupportedOperationException", issues.get(0).message());
+    }
+}
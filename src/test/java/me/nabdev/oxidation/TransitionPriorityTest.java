@@ -0,0 +1,88 @@
+package me.nabdev.oxidation;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TransitionPriorityTest {
+    private static final class TestMachine extends StateMachineBase {
+        boolean go = false;
+
+        State state(String name) {
+            return new State(this) {
+            }.withName(name);
+        }
+    }
+
+    private TestMachine machine;
+    private State start;
+    private State a;
+    private State b;
+
+    @BeforeEach
+    void setUp() {
+        machine = new TestMachine();
+        start = machine.state("Start");
+        a = machine.state("A");
+        b = machine.state("B");
+        machine.registerToRootState(start, a, b);
+        machine.currentState = start;
+    }
+
+    private State run() {
+        machine.go = true;
+        return machine.traverseTransitions(machine.currentState);
+    }
+
+    @Test
+    void equalPriorityTransitionsAreTakenInInsertionOrder() {
+        start.withTransition(a, () -> machine.go, 5, "First");
+        start.withTransition(b, () -> machine.go, 5, "Second");
+
+        assertSame(a, run());
+    }
+
+    @Test
+    void equalPriorityTransitionsAddedInReverseAreTakenInInsertionOrder() {
+        start.withTransition(b, () -> machine.go, 5, "First");
+        start.withTransition(a, () -> machine.go, 5, "Second");
+
+        assertSame(b, run());
+    }
+
+    @Test
+    void equalPriorityEntranceConditionsAreTakenInInsertionOrder() {
+        State parent = machine.state("Parent");
+        State first = machine.state("First");
+        State second = machine.state("Second");
+        machine.registerToRootState(parent);
+        parent.withChild(first, () -> true, 5, "First");
+        parent.withChild(second, () -> true, 5, "Second");
+        start.withTransition(parent, () -> machine.go, "Enter");
+
+        assertSame(first, run());
+    }
+
+    @Test
+    void outerLevelWinsOverInnerLevelAtEqualPriority() {
+        State outer = machine.state("Outer");
+        State inner = machine.state("Inner");
+        machine.registerToRootState(outer);
+        outer.withDefaultChild(inner);
+        machine.currentState = inner;
+        // The inner transition is added first, so only the level decides the order
+        inner.withTransition(a, () -> machine.go, 5, "Inner");
+        outer.withTransition(b, () -> machine.go, 5, "Outer");
+
+        assertSame(b, run());
+    }
+
+    @Test
+    void higherPriorityWinsOverEarlierTransition() {
+        start.withTransition(a, () -> machine.go, 10, "Earlier");
+        start.withTransition(b, () -> machine.go, 1, "Higher priority");
+
+        assertSame(b, run());
+    }
+}
@@ -0,0 +1,203 @@
+package me.nabdev.oxidation.sim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import me.nabdev.oxidation.RobotMode;
+import me.nabdev.oxidation.State;
+import me.nabdev.oxidation.StateMachineBase;
+
+class StateMachineSimulationTest {
+    // Counts how it is run, and finishes after a set number of executions
+    private static final class CountingCommand extends Command {
+        private final int executionsToFinish;
+        int initialized;
+        int executed;
+        int finished;
+        int interrupted;
+
+        CountingCommand(int executionsToFinish) {
+            this.executionsToFinish = executionsToFinish;
+        }
+
+        @Override
+        public void initialize() {
+            initialized++;
+        }
+
+        @Override
+        public void execute() {
+            executed++;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return executionsToFinish > 0 && executed >= executionsToFinish;
+        }
+
+        @Override
+        public void end(boolean wasInterrupted) {
+            if (wasInterrupted)
+                interrupted++;
+            else
+                finished++;
+        }
+    }
+
+    private static final class TestMachine extends StateMachineBase {
+        final CountingCommand autoCommand = new CountingCommand(0);
+        final CountingCommand teleopCommand = new CountingCommand(0);
+        final State disabled;
+        final State teleop;
+        final State auto;
+
+        TestMachine() {
+            disabled = new State(this) {
+            }.withName("Disabled");
+            teleop = new State(this) {
+                {
+                    activeTrg().runWhileTrue(teleopCommand);
+                }
+            }.withName("Teleop");
+            auto = new State(this) {
+                {
+                    startWhenActive(autoCommand);
+                }
+            }.withName("Auto");
+            registerToRootState(disabled, teleop, auto);
+            disabled.withModeTransitions(disabled, teleop, auto, disabled);
+            teleop.withModeTransitions(disabled, teleop, auto, disabled);
+            auto.withModeTransitions(disabled, teleop, auto, disabled);
+            currentState = disabled;
+        }
+    }
+
+    private TestMachine machine;
+    private StateMachineSimulation sim;
+
+    @BeforeEach
+    void setUp() {
+        machine = new TestMachine();
+        sim = new StateMachineSimulation(machine);
+    }
+
+    @Test
+    void followsScriptedModeChanges() {
+        sim.atMode(0.5, RobotMode.AUTONOMOUS).atMode(15.0, RobotMode.TELEOP);
+        sim.start();
+
+        sim.run(0.5);
+        assertSame(machine.disabled, machine.currentState);
+        assertEquals(25, sim.getCycles());
+
+        sim.step();
+        assertSame(machine.auto, machine.currentState);
+        assertEquals(RobotMode.AUTONOMOUS, sim.getMode());
+
+        sim.run(14.48);
+        assertSame(machine.auto, machine.currentState);
+        sim.step();
+        assertSame(machine.teleop, machine.currentState);
+        assertEquals(15.02, sim.getTime(), 1e-9);
+    }
+
+    @Test
+    void actionsRunInTimeOrderThenInTheOrderAdded() {
+        List<String> order = new ArrayList<>();
+        sim.at(1.0, () -> order.add("A"))
+                .at(0.5, () -> order.add("B"))
+                .at(1.0, () -> order.add("C"))
+                .at(0.0, () -> order.add("Start"));
+        sim.start();
+        assertEquals(List.of("Start"), order);
+
+        sim.run(2.0);
+        assertEquals(List.of("Start", "B", "A", "C"), order);
+    }
+
+    @Test
+    void stateCommandsRunOnTheSimulatedScheduler() {
+        sim.setMode(RobotMode.AUTONOMOUS);
+        sim.start();
+        sim.runCycles(10);
+
+        CountingCommand command = machine.autoCommand;
+        assertSame(machine.auto, machine.currentState);
+        assertEquals(1, command.initialized);
+        assertEquals(10, command.executed);
+        assertTrue(sim.getScheduler().isScheduled(command));
+
+        sim.setMode(RobotMode.DISABLED);
+        sim.step();
+        assertSame(machine.disabled, machine.currentState);
+        assertEquals(1, command.interrupted);
+        assertFalse(sim.getScheduler().isScheduled(command));
+        assertEquals(0, sim.getScheduler().getScheduledCount());
+    }
+
+    @Test
+    void activeTriggerRunsOnTheCycleTheStateIsEntered() {
+        sim.start();
+        sim.step();
+        assertSame(machine.disabled, machine.currentState);
+
+        sim.setMode(RobotMode.TELEOP);
+        sim.step();
+        CountingCommand command = machine.teleopCommand;
+        assertSame(machine.teleop, machine.currentState);
+        assertEquals(1, command.initialized);
+        assertEquals(1, command.executed);
+
+        sim.setMode(RobotMode.DISABLED);
+        sim.step();
+        assertEquals(1, command.interrupted);
+        assertFalse(sim.getScheduler().isScheduled(command));
+    }
+
+    @Test
+    void schedulerEndsCommandsThatFinish() {
+        SimScheduler scheduler = new SimScheduler();
+        CountingCommand command = new CountingCommand(2);
+        scheduler.schedule(command);
+        // Already scheduled, so this does nothing
+        scheduler.schedule(command);
+        assertEquals(1, scheduler.getScheduleCount());
+        assertEquals(1, command.initialized);
+
+        scheduler.run();
+        assertTrue(scheduler.isScheduled(command));
+        scheduler.run();
+        assertFalse(scheduler.isScheduled(command));
+        scheduler.run();
+
+        assertEquals(2, command.executed);
+        assertEquals(1, command.finished);
+        assertEquals(0, command.interrupted);
+    }
+
+    @Test
+    void schedulerCancelsEveryCommand() {
+        SimScheduler scheduler = new SimScheduler();
+        CountingCommand first = new CountingCommand(0);
+        CountingCommand second = new CountingCommand(0);
+        scheduler.schedule(first);
+        scheduler.schedule(second);
+
+        scheduler.cancelAll();
+        // Not scheduled, so this does nothing
+        scheduler.cancel(first);
+
+        assertEquals(0, scheduler.getScheduledCount());
+        assertEquals(1, first.interrupted);
+        assertEquals(1, second.interrupted);
+    }
+}
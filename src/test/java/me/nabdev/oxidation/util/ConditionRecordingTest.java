@@ -0,0 +1,102 @@
+package me.nabdev.oxidation.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+class ConditionRecordingTest {
+    private static ConditionRecording sample() {
+        ConditionRecording recording = new ConditionRecording();
+        recording.setCheckpoint(3);
+        recording.record(0, true);
+        recording.record(70, false);
+        recording.endFrame();
+        // An empty frame
+        recording.setCheckpoint(4);
+        recording.endFrame();
+        recording.setCheckpoint(5);
+        recording.record(1, false);
+        recording.record(200, true);
+        recording.endFrame();
+        return recording;
+    }
+
+    private static void assertSample(ConditionRecording recording) {
+        assertEquals(3, recording.getFrameCount());
+        assertEquals(4, recording.getSampleCount());
+        assertEquals(3, recording.getCheckpoint(0));
+        assertEquals(4, recording.getCheckpoint(1));
+        assertEquals(5, recording.getCheckpoint(2));
+
+        assertTrue(recording.getValue(0, 0, false));
+        assertFalse(recording.getValue(0, 70, true));
+        assertTrue(recording.getValue(2, 200, false));
+        assertFalse(recording.getValue(2, 1, true));
+    }
+
+    @Test
+    void valuesAreLookedUpByFrameAndId() {
+        assertSample(sample());
+    }
+
+    @Test
+    void unsampledConditionsReturnTheFallback() {
+        ConditionRecording recording = sample();
+
+        // Sampled in another frame, in the same word as a sampled condition, past
+        // the end of the frame, and outside the recording
+        assertTrue(recording.getValue(0, 200, true));
+        assertFalse(recording.getValue(0, 1, false));
+        assertTrue(recording.getValue(1, 0, true));
+        assertTrue(recording.getValue(2, 70, true));
+        assertTrue(recording.getValue(3, 0, true));
+        assertTrue(recording.getValue(-1, 0, true));
+    }
+
+    @Test
+    void onlyTheFirstSampleInAFrameIsKept() {
+        ConditionRecording recording = new ConditionRecording();
+        recording.record(5, true);
+        recording.record(5, false);
+        recording.endFrame();
+
+        assertTrue(recording.getValue(0, 5, false));
+        assertEquals(1, recording.getSampleCount());
+    }
+
+    @Test
+    void samplesInAnIncompleteFrameAreNotCounted() {
+        ConditionRecording recording = sample();
+        recording.record(0, true);
+
+        assertEquals(3, recording.getFrameCount());
+        assertEquals(4, recording.getSampleCount());
+    }
+
+    @Test
+    void roundTripsThroughAStream() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sample().write(out);
+
+        assertSample(ConditionRecording.read(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    @Test
+    void rejectsOtherVersions() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(0x4F584352);
+        data.writeInt(1);
+        data.writeInt(0);
+
+        assertThrows(IOException.class, () -> ConditionRecording.read(new ByteArrayInputStream(out.toByteArray())));
+    }
+}
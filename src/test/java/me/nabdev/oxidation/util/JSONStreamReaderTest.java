@@ -0,0 +1,201 @@
+package me.nabdev.oxidation.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import me.nabdev.oxidation.util.JSONStreamReader.Token;
+
+class JSONStreamReaderTest {
+    private static JSONStreamReader reader(String json) {
+        return new JSONStreamReader(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String string(String json) throws IOException {
+        JSONStreamReader reader = reader(json);
+        String value = reader.nextString();
+        assertEquals(Token.END_DOCUMENT, reader.peek());
+        return value;
+    }
+
+    private static double number(String json) throws IOException {
+        JSONStreamReader reader = reader(json);
+        double value = reader.nextDouble();
+        assertEquals(Token.END_DOCUMENT, reader.peek());
+        return value;
+    }
+
+    private static long whole(String json) throws IOException {
+        JSONStreamReader reader = reader(json);
+        long value = reader.nextLong();
+        assertEquals(Token.END_DOCUMENT, reader.peek());
+        return value;
+    }
+
+    // Reads the whole document, failing on the first malformed token
+    private static void readAll(String json) throws IOException {
+        JSONStreamReader reader = reader(json);
+        reader.skipValue();
+        reader.peek();
+    }
+
+    @Test
+    void readsNestedValuesInOrder() throws IOException {
+        JSONStreamReader reader = reader(" {\"a\": [1, true, null], \"b\": {\"c\": \"d\"}, \"e\": false} ");
+        reader.beginObject();
+        assertEquals("a", reader.nextName());
+        reader.beginArray();
+        assertEquals(1, reader.nextInt());
+        assertTrue(reader.nextBoolean());
+        reader.nextNull();
+        assertFalse(reader.hasNext());
+        reader.endArray();
+        assertEquals("b", reader.nextName());
+        reader.skipValue();
+        assertEquals("e", reader.nextName());
+        assertFalse(reader.nextBoolean());
+        reader.endObject();
+        assertEquals(Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    void decodesEscapes() throws IOException {
+        assertEquals("a\"b\\c/d\be\ff\ng\rh\ti", string("\"a\\\"b\\\\c\\/d\\be\\ff\\ng\\rh\\ti\""));
+        assertEquals("\u00e9\u4e2d", string("\"\\u00e9\\u4E2D\""));
+        // Multi-byte UTF-8 on either side of an escape
+        assertEquals("caf\u00e9\n\u00e9", string("\"caf\u00e9\\n\u00e9\""));
+    }
+
+    @Test
+    void decodesSurrogatePairs() throws IOException {
+        String emoji = new String(Character.toChars(0x1F600));
+        assertEquals(emoji, string("\"\\ud83d\\ude00\""));
+        assertEquals(emoji, string("\"" + emoji + "\""));
+        assertEquals(0x1F600, string("\"x\\uD83D\\uDE00\"").codePointAt(1));
+    }
+
+    @Test
+    void rejectsInvalidEscapes() {
+        assertThrows(IOException.class, () -> string("\"\\x\""));
+        assertThrows(IOException.class, () -> string("\"\\u12g4\""));
+        assertThrows(IOException.class, () -> string("\"\\u12\""));
+    }
+
+    @Test
+    void readsExponents() throws IOException {
+        assertEquals(1000.0, number("1e3"));
+        assertEquals(1000.0, number("1E+3"));
+        assertEquals(0.0025, number("2.5e-3"));
+        assertEquals(-1.5e-7, number("-15E-8"));
+        assertEquals(1e22, number("1e22"));
+        assertEquals(1e23, number("1e23"));
+        assertEquals(Double.POSITIVE_INFINITY, number("1e400"));
+        assertEquals(0.0, number("1e-400"));
+        assertEquals(1000, whole("1e3"));
+        assertEquals(120, whole("1.2e2"));
+    }
+
+    @Test
+    void readsNegativeZero() throws IOException {
+        assertEquals(-0.0, number("-0"));
+        assertEquals(-0.0, number("-0.0"));
+        assertEquals(-0.0, number("-0e5"));
+        assertEquals(0.0, number("0"));
+        assertEquals(0, whole("-0"));
+    }
+
+    @Test
+    void readsNumbersTooLongForTheFastPath() throws IOException {
+        assertEquals(0.1, number("0.1000000000000000000000001"));
+        assertEquals(12345678901234567890.0, number("12345678901234567890"));
+        assertEquals(Math.PI, number("3.14159265358979323846264338327950288"));
+        assertEquals(9007199254740993.0, number("9007199254740993"));
+        assertEquals(4.9e-324, number("4.9e-324"));
+        assertEquals(Long.MAX_VALUE, whole("9223372036854775807"));
+        assertEquals(Long.MIN_VALUE, whole("-9223372036854775808"));
+        assertEquals(100000000000000000L, whole("100000000000000000.000"));
+    }
+
+    @Test
+    void rejectsNumbersThatAreNotWholeOrOutOfRange() {
+        assertThrows(IOException.class, () -> whole("1.5"));
+        assertThrows(IOException.class, () -> whole("1e-1"));
+        assertThrows(IOException.class, () -> whole("9223372036854775808"));
+        assertThrows(IOException.class, () -> whole("1e19"));
+        assertThrows(IOException.class, () -> reader("2147483648").nextInt());
+    }
+
+    @Test
+    void rejectsMalformedNumbers() {
+        assertThrows(IOException.class, () -> readAll("-"));
+        assertThrows(IOException.class, () -> readAll("1."));
+        assertThrows(IOException.class, () -> readAll(".5"));
+        assertThrows(IOException.class, () -> readAll("1e"));
+        assertThrows(IOException.class, () -> readAll("1e+"));
+        assertThrows(IOException.class, () -> readAll("[1.2.3]"));
+        assertThrows(IOException.class, () -> readAll("01"));
+        assertThrows(IOException.class, () -> readAll("-01"));
+        assertThrows(IOException.class, () -> readAll("[00.5]"));
+    }
+
+    @Test
+    void readsZeroBeforeAFractionOrExponent() throws IOException {
+        assertEquals(0.5, number("0.5"));
+        assertEquals(0.0, number("0e3"));
+        assertEquals(-0.25, number("-0.25"));
+    }
+
+    @Test
+    void skipValueDoesNotSkipTheEndOfTheEnclosingValue() throws IOException {
+        JSONStreamReader reader = reader("[]");
+        reader.beginArray();
+        IOException e = assertThrows(IOException.class, reader::skipValue);
+        assertEquals("Expected a value at byte 1", e.getMessage());
+
+        reader = reader("{}");
+        reader.beginObject();
+        assertThrows(IOException.class, reader::skipValue);
+        reader.endObject();
+        assertEquals(Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    void rejectsTruncatedInput() {
+        assertThrows(IOException.class, () -> readAll(""));
+        assertThrows(IOException.class, () -> readAll("["));
+        assertThrows(IOException.class, () -> readAll("[1,"));
+        assertThrows(IOException.class, () -> readAll("{"));
+        assertThrows(IOException.class, () -> readAll("{\"a\""));
+        assertThrows(IOException.class, () -> readAll("{\"a\":"));
+        assertThrows(IOException.class, () -> readAll("{\"a\": 1"));
+        assertThrows(IOException.class, () -> readAll("\"abc"));
+        assertThrows(IOException.class, () -> readAll("\"abc\\"));
+        assertThrows(IOException.class, () -> readAll("tru"));
+        assertThrows(IOException.class, () -> readAll("nul"));
+    }
+
+    @Test
+    void rejectsTrailingGarbage() {
+        IOException e = assertThrows(IOException.class, () -> readAll("[1] x"));
+        assertEquals("Expected the end of the document at byte 4", e.getMessage());
+        assertThrows(IOException.class, () -> readAll("{} {}"));
+        assertThrows(IOException.class, () -> readAll("1 2"));
+        assertThrows(IOException.class, () -> readAll("truex"));
+        assertThrows(IOException.class, () -> readAll("\"a\"\"b\""));
+    }
+
+    @Test
+    void reportsWhereTheProblemIs() {
+        IOException e = assertThrows(IOException.class, () -> readAll("{\"a\" 1}"));
+        assertEquals("Expected ':' at byte 5", e.getMessage());
+        e = assertThrows(IOException.class, () -> reader("[true]").nextDouble());
+        assertEquals("Expected NUMBER but found BEGIN_ARRAY at byte 0", e.getMessage());
+    }
+}
@@ -0,0 +1,40 @@
+package me.nabdev.oxidation.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+
+class SignalTest {
+    private int value;
+
+    @Test
+    void watchedSignalIsRaisedWhenTheValueChanges() {
+        Signal signal = Signal.watching(() -> value);
+        try {
+            long version = signal.getVersion();
+            Signal.pollWatched();
+            assertEquals(version, signal.getVersion());
+
+            value++;
+            Signal.pollWatched();
+            assertNotEquals(version, signal.getVersion());
+        } finally {
+            signal.unwatch();
+        }
+    }
+
+    @Test
+    void unwatchedSignalIsNotRaised() {
+        Signal signal = Signal.watching(() -> value);
+        signal.unwatch();
+        long version = signal.getVersion();
+
+        value++;
+        Signal.pollWatched();
+        assertEquals(version, signal.getVersion());
+
+        // Unwatching again does nothing
+        signal.unwatch();
+    }
+}
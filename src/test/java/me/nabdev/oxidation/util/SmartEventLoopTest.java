@@ -0,0 +1,72 @@
+package me.nabdev.oxidation.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import me.nabdev.oxidation.sim.SimScheduler;
+
+class SmartEventLoopTest {
+    private final List<String> order = new ArrayList<>();
+    private SmartEventLoop loop;
+    private boolean pressed;
+
+    @BeforeEach
+    void setUp() {
+        loop = new SmartEventLoop();
+        loop.setScheduler(new SimScheduler());
+    }
+
+    // Records its name when it is scheduled
+    private Command command(String name) {
+        return new Command() {
+            @Override
+            public void initialize() {
+                order.add(name);
+            }
+        };
+    }
+
+    @Test
+    void plainBindingsRunBeforeTriggerBindings() {
+        new SmartTrigger(loop, () -> pressed).onTrue(command("Trigger"));
+        loop.bind(command("Unused"), () -> order.add("Binding"));
+
+        pressed = true;
+        loop.poll();
+
+        assertEquals(List.of("Binding", "Trigger"), order);
+    }
+
+    @Test
+    void conditionsAreDispatchedInTheOrderTheyWereFirstBound() {
+        SmartTrigger first = new SmartTrigger(loop, () -> pressed);
+        SmartTrigger second = new SmartTrigger(loop, () -> !pressed);
+        first.onTrue(command("First rising"));
+        second.onFalse(command("Second falling"));
+        first.onTrue(command("First rising again"));
+
+        pressed = true;
+        loop.poll();
+
+        assertEquals(List.of("First rising", "First rising again", "Second falling"), order);
+    }
+
+    @Test
+    void levelBindingsRunAfterEdges() {
+        SmartTrigger first = new SmartTrigger(loop, () -> pressed);
+        SmartTrigger second = new SmartTrigger(loop, () -> pressed);
+        first.runWhileTrue(command("Level"));
+        second.onTrue(command("Edge"));
+
+        pressed = true;
+        loop.poll();
+
+        assertEquals(List.of("Edge", "Level"), order);
+    }
+}